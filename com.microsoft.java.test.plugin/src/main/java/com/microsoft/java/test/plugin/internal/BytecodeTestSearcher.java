@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.ls.core.internal.JDTUtils;
+import org.eclipse.jdt.ls.core.internal.ResourceUtils;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+import com.microsoft.java.test.plugin.internal.ClassFileParser.ClassInfo;
+import com.microsoft.java.test.plugin.internal.ClassFileParser.MethodInfo;
+import com.microsoft.java.test.plugin.internal.testsuit.TestLevel;
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuite;
+
+/**
+ * Discovers the tests of the workspace from the class files in the output folders of the projects
+ * instead of the Java model, which is faster when the index is cold or huge. The tests are mapped
+ * back to their sources through the <code>SourceFile</code> attribute, and to the first line of
+ * their body through the <code>LineNumberTable</code>. Only compiled tests are found.
+ */
+public class BytecodeTestSearcher {
+	private static final String JUNIT_TEST_ANNOTATION = "Lorg/junit/Test;";
+	private static final String JUNIT_RUN_WITH_ANNOTATION = "Lorg/junit/runner/RunWith;";
+	private static final String CLASS_FILE_EXTENSION = ".class";
+
+	public List<TestSuite> searchAllTests(List<Object> arguments, IProgressMonitor monitor) {
+		boolean allSources = arguments != null && arguments.size() > 0 && Boolean.TRUE.equals(arguments.get(0));
+		List<OutputFolder> folders = new ArrayList<>();
+		try {
+			for (IJavaProject project : JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects()) {
+				folders.addAll(getOutputFolders(project, allSources));
+			}
+		} catch (JavaModelException e) {
+			return Collections.emptyList();
+		}
+
+		List<TestClass> classes = folders.parallelStream()
+				.flatMap(folder -> scan(folder, monitor).stream())
+				.collect(Collectors.toList());
+		if (monitor.isCanceled()) {
+			return Collections.emptyList();
+		}
+
+		List<TestSuite> tests = new ArrayList<>();
+		for (TestClass testClass : classes) {
+			String uri = testClass.getUri();
+			if (uri == null) {
+				continue;
+			}
+			String className = testClass.info.getName().replace('/', '.');
+			int packageIndex = className.lastIndexOf('.');
+			String packageName = packageIndex == -1 ? "" : className.substring(0, packageIndex);
+			TestSuite parent = new TestSuite(toRange(testClass.getClassLine()), uri, className, packageName,
+					TestLevel.Class);
+			tests.add(parent);
+			int parentIndex = tests.size() - 1;
+			List<Integer> children = new ArrayList<>();
+			for (MethodInfo method : testClass.testMethods) {
+				TestSuite child = new TestSuite(toRange(method.getFirstLine()), uri, className + "#" + method.getName(),
+						packageName, TestLevel.Method);
+				child.setParent(parentIndex);
+				tests.add(child);
+				children.add(tests.size() - 1);
+			}
+			parent.setChildren(children);
+		}
+		return tests;
+	}
+
+	private static List<OutputFolder> getOutputFolders(IJavaProject project, boolean allSources)
+			throws JavaModelException {
+		List<IPackageFragmentRoot> roots = allSources ? Collections.emptyList()
+				: ProjectUtils.getTestSourceRoots(project);
+		if (roots.isEmpty()) {
+			roots = new ArrayList<>();
+			for (IPackageFragmentRoot root : project.getPackageFragmentRoots()) {
+				if (root.getKind() == IPackageFragmentRoot.K_SOURCE) {
+					roots.add(root);
+				}
+			}
+		}
+		Set<IPath> outputs = new LinkedHashSet<>();
+		for (IPackageFragmentRoot root : roots) {
+			IClasspathEntry entry = root.getRawClasspathEntry();
+			IPath output = entry == null ? null : entry.getOutputLocation();
+			outputs.add(output == null ? project.getOutputLocation() : output);
+		}
+		IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+		List<OutputFolder> folders = new ArrayList<>();
+		for (IPath output : outputs) {
+			IResource resource = workspaceRoot.findMember(output);
+			if (resource != null && resource.getLocation() != null) {
+				folders.add(new OutputFolder(resource.getLocation().toFile(), roots));
+			}
+		}
+		return folders;
+	}
+
+	private static List<TestClass> scan(OutputFolder folder, IProgressMonitor monitor) {
+		List<TestClass> classes = new ArrayList<>();
+		scan(folder, folder.location, classes, monitor);
+		return classes;
+	}
+
+	private static void scan(OutputFolder folder, File directory, List<TestClass> classes, IProgressMonitor monitor) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (monitor.isCanceled()) {
+				return;
+			}
+			if (file.isDirectory()) {
+				scan(folder, file, classes, monitor);
+			} else if (file.getName().endsWith(CLASS_FILE_EXTENSION)) {
+				ClassInfo info = read(file);
+				if (info == null || !info.isAccessibleClass()) {
+					continue;
+				}
+				List<MethodInfo> testMethods = info.getMethods().stream()
+						.filter(m -> m.isTestMethod(JUNIT_TEST_ANNOTATION))
+						.collect(Collectors.toList());
+				if (!testMethods.isEmpty() || info.hasAnnotation(JUNIT_RUN_WITH_ANNOTATION)) {
+					classes.add(new TestClass(folder, info, testMethods));
+				}
+			}
+		}
+	}
+
+	private static ClassInfo read(File file) {
+		// not mapped, a mapping locks the file on Windows until it is garbage collected, so the
+		// build couldn't overwrite it
+		try {
+			return ClassFileParser.parse(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The tests only know the first line of the method bodies, so the range covers the start of the
+	 * line before the body, where the declaration usually is.
+	 */
+	private static Range toRange(int firstLine) {
+		int line = Math.max(firstLine - 2, 0);
+		return new Range(new Position(line, 0), new Position(line, 0));
+	}
+
+	private static class OutputFolder {
+		final File location;
+		final List<IPackageFragmentRoot> sourceRoots;
+
+		OutputFolder(File location, List<IPackageFragmentRoot> sourceRoots) {
+			this.location = location;
+			this.sourceRoots = sourceRoots;
+		}
+	}
+
+	private static class TestClass {
+		final OutputFolder folder;
+		final ClassInfo info;
+		final List<MethodInfo> testMethods;
+
+		TestClass(OutputFolder folder, ClassInfo info, List<MethodInfo> testMethods) {
+			this.folder = folder;
+			this.info = info;
+			this.testMethods = testMethods;
+		}
+
+		/** The line of the class declaration, taken from the constructor, implicit ones included. */
+		int getClassLine() {
+			int line = -1;
+			for (MethodInfo method : info.getMethods()) {
+				if ("<init>".equals(method.getName()) && method.getFirstLine() > 0
+						&& (line == -1 || method.getFirstLine() < line)) {
+					line = method.getFirstLine();
+				}
+			}
+			return line == -1 ? 1 : line + 1;
+		}
+
+		String getUri() {
+			if (info.getSourceFile() == null) {
+				return null;
+			}
+			String name = info.getName();
+			int packageIndex = name.lastIndexOf('/');
+			String source = packageIndex == -1 ? info.getSourceFile()
+					: name.substring(0, packageIndex + 1) + info.getSourceFile();
+			for (IPackageFragmentRoot root : folder.sourceRoots) {
+				IResource resource = root.getResource();
+				if (!(resource instanceof IContainer)) {
+					continue;
+				}
+				IFile file = ((IContainer) resource).getFile(new Path(source));
+				if (file.exists()) {
+					ICompilationUnit unit = JavaCore.createCompilationUnitFrom(file);
+					return unit == null ? null : ResourceUtils.toClientUri(JDTUtils.toUri(unit));
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A lightweight class file parser reading only what test discovery needs: the class and method
+ * access flags, the runtime visible annotations, the source file and the first line of every method.
+ */
+public class ClassFileParser {
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_INTERFACE = 0x0200;
+	public static final int ACC_ABSTRACT = 0x0400;
+
+	private static final int MAGIC = 0xCAFEBABE;
+
+	private final ByteBuffer buffer;
+	private String[] utf8;
+	private int[] classNames;
+
+	private ClassFileParser(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Parses a class file.
+	 *
+	 * @return the parsed class, or <code>null</code> when the content is not a valid class file
+	 */
+	public static ClassInfo parse(ByteBuffer buffer) {
+		try {
+			return new ClassFileParser(buffer).parse();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private ClassInfo parse() {
+		if (buffer.getInt() != MAGIC) {
+			return null;
+		}
+		buffer.getShort(); // minor version
+		buffer.getShort(); // major version
+		readConstantPool();
+
+		ClassInfo info = new ClassInfo();
+		info.access = u2();
+		info.name = className(u2());
+		u2(); // super class
+		skip(2 * u2()); // interfaces
+
+		int fields = u2();
+		for (int i = 0; i < fields; i++) {
+			skip(6);
+			skipAttributes();
+		}
+
+		int methods = u2();
+		for (int i = 0; i < methods; i++) {
+			MethodInfo method = new MethodInfo();
+			method.access = u2();
+			method.name = utf8(u2());
+			method.descriptor = utf8(u2());
+			int attributes = u2();
+			for (int j = 0; j < attributes; j++) {
+				String name = utf8(u2());
+				int length = buffer.getInt();
+				int end = buffer.position() + length;
+				if ("RuntimeVisibleAnnotations".equals(name)) {
+					readAnnotations(method.annotations);
+				} else if ("Code".equals(name)) {
+					method.firstLine = readFirstLine();
+				}
+				buffer.position(end);
+			}
+			info.methods.add(method);
+		}
+
+		int attributes = u2();
+		for (int i = 0; i < attributes; i++) {
+			String name = utf8(u2());
+			int length = buffer.getInt();
+			int end = buffer.position() + length;
+			if ("SourceFile".equals(name)) {
+				info.sourceFile = utf8(u2());
+			} else if ("RuntimeVisibleAnnotations".equals(name)) {
+				readAnnotations(info.annotations);
+			} else if ("InnerClasses".equals(name)) {
+				int classes = u2();
+				for (int j = 0; j < classes; j++) {
+					int inner = u2();
+					u2(); // outer class
+					u2(); // inner name
+					int access = u2();
+					if (info.name.equals(className(inner))) {
+						info.nested = true;
+						info.nestedAccess = access;
+					}
+				}
+			}
+			buffer.position(end);
+		}
+		return info;
+	}
+
+	private void readConstantPool() {
+		int count = u2();
+		utf8 = new String[count];
+		classNames = new int[count];
+		for (int i = 1; i < count; i++) {
+			int tag = buffer.get() & 0xFF;
+			switch (tag) {
+			case 1: // Utf8
+				utf8[i] = readUtf8(u2());
+				break;
+			case 7: // Class
+				classNames[i] = u2();
+				break;
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				skip(2);
+				break;
+			case 15: // MethodHandle
+				skip(3);
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				skip(4);
+				break;
+			case 5: // Long
+			case 6: // Double
+				skip(8);
+				i++;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+			}
+		}
+	}
+
+	private void readAnnotations(Set<String> annotations) {
+		int count = u2();
+		for (int i = 0; i < count; i++) {
+			annotations.add(utf8(u2()));
+			skipAnnotationPairs();
+		}
+	}
+
+	private void skipAnnotationPairs() {
+		int pairs = u2();
+		for (int i = 0; i < pairs; i++) {
+			skip(2);
+			skipElementValue();
+		}
+	}
+
+	private void skipElementValue() {
+		int tag = buffer.get() & 0xFF;
+		switch (tag) {
+		case 'e':
+			skip(4);
+			break;
+		case '@':
+			skip(2);
+			skipAnnotationPairs();
+			break;
+		case '[':
+			int values = u2();
+			for (int i = 0; i < values; i++) {
+				skipElementValue();
+			}
+			break;
+		default:
+			skip(2);
+		}
+	}
+
+	/**
+	 * Reads the smallest line of the LineNumberTable of a Code attribute, or -1 without line numbers.
+	 */
+	private int readFirstLine() {
+		skip(4); // max stack, max locals
+		skip(buffer.getInt()); // code
+		skip(8 * u2()); // exception table
+		int firstLine = -1;
+		int attributes = u2();
+		for (int i = 0; i < attributes; i++) {
+			String name = utf8(u2());
+			int length = buffer.getInt();
+			int end = buffer.position() + length;
+			if ("LineNumberTable".equals(name)) {
+				int lines = u2();
+				for (int j = 0; j < lines; j++) {
+					skip(2);
+					int line = u2();
+					if (firstLine == -1 || line < firstLine) {
+						firstLine = line;
+					}
+				}
+			}
+			buffer.position(end);
+		}
+		return firstLine;
+	}
+
+	private void skipAttributes() {
+		int attributes = u2();
+		for (int i = 0; i < attributes; i++) {
+			skip(2);
+			skip(buffer.getInt());
+		}
+	}
+
+	private String readUtf8(int length) {
+		// modified UTF-8, as written by DataOutput#writeUTF
+		char[] chars = new char[length];
+		int count = 0;
+		int end = buffer.position() + length;
+		while (buffer.position() < end) {
+			int b = buffer.get() & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				chars[count++] = (char) (((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+			} else {
+				chars[count++] = (char) (((b & 0x0F) << 12) | ((buffer.get() & 0x3F) << 6) | (buffer.get() & 0x3F));
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	private String utf8(int index) {
+		return index == 0 ? null : utf8[index];
+	}
+
+	private String className(int index) {
+		return index == 0 ? null : utf8[classNames[index]];
+	}
+
+	private int u2() {
+		return buffer.getShort() & 0xFFFF;
+	}
+
+	private void skip(int bytes) {
+		buffer.position(buffer.position() + bytes);
+	}
+
+	public static class ClassInfo {
+		/** Internal name of the class, e.g. <code>a/b/C$D</code>. */
+		String name;
+		int access;
+		String sourceFile;
+		boolean nested;
+		int nestedAccess;
+		final Set<String> annotations = new HashSet<>();
+		final List<MethodInfo> methods = new ArrayList<>();
+
+		public String getName() {
+			return name;
+		}
+
+		public String getSourceFile() {
+			return sourceFile;
+		}
+
+		public List<MethodInfo> getMethods() {
+			return methods;
+		}
+
+		public boolean hasAnnotation(String descriptor) {
+			return annotations.contains(descriptor);
+		}
+
+		/** Whether JUnit can instantiate the class: public, concrete and static when nested. */
+		public boolean isAccessibleClass() {
+			if ((access & (ACC_INTERFACE | ACC_ABSTRACT)) != 0 || (access & ACC_PUBLIC) == 0) {
+				return false;
+			}
+			return !nested || ((nestedAccess & ACC_PUBLIC) != 0 && (nestedAccess & ACC_STATIC) != 0);
+		}
+	}
+
+	public static class MethodInfo {
+		String name;
+		String descriptor;
+		int access;
+		int firstLine = -1;
+		final Set<String> annotations = new HashSet<>();
+
+		public String getName() {
+			return name;
+		}
+
+		/** Returns the first line of the method body, 1-based, or -1 without line numbers. */
+		public int getFirstLine() {
+			return firstLine;
+		}
+
+		public boolean hasAnnotation(String descriptor) {
+			return annotations.contains(descriptor);
+		}
+
+		/** Whether the method is a JUnit test method: public, non static, concrete and void. */
+		public boolean isTestMethod(String annotation) {
+			return (access & ACC_PUBLIC) != 0 && (access & (ACC_STATIC | ACC_ABSTRACT)) == 0
+					&& descriptor != null && descriptor.endsWith(")V") && !"<init>".equals(name)
+					&& hasAnnotation(annotation);
+		}
+	}
+}
@@ -10,16 +10,22 @@
  *******************************************************************************/
 package com.microsoft.java.test.plugin.internal;
 
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
 public class JUnitPlugin implements BundleActivator {
 
+	private static BundleContext context;
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
 	 */
 	public void start(BundleContext context) throws Exception {
+		JUnitPlugin.context = context;
+		TestCatalogCache.getInstance().load();
 	}
 	
 	/*
@@ -27,6 +33,17 @@ public class JUnitPlugin implements BundleActivator {
 	 * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		TestCatalogCache.getInstance().save();
+		JUnitPlugin.context = null;
 	}
 
+	/**
+	 * Returns the plugin's private state folder, or <code>null</code> when the bundle is not active.
+	 */
+	public static IPath getStateLocation() {
+		if (context == null) {
+			return null;
+		}
+		return Platform.getStateLocation(context.getBundle());
+	}
 }
@@ -14,28 +14,30 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import javax.swing.ProgressMonitor;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.Flags;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
-import org.eclipse.jdt.core.ISourceRange;
-import org.eclipse.jdt.core.ISourceReference;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.ResourceUtils;
-import org.eclipse.lsp4j.Range;
 
 import com.microsoft.java.test.plugin.internal.testsuit.TestLevel;
 import com.microsoft.java.test.plugin.internal.testsuit.TestSuite;
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuiteDelta;
 
 public class JUnitTestFetcher {
 
@@ -43,15 +45,104 @@ public class JUnitTestFetcher {
 		if (arguments == null || arguments.size() == 0) {
 			return Collections.emptyList();
 		}
+		List<TestSuite> tests = fetchTests((String)arguments.get(0), monitor);
+		if (tests == null) {
+			throw new OperationCanceledException();
+		}
+		return tests;
+	}
+
+	/**
+	 * Fetches the tests of many documents in one request. The documents are processed concurrently,
+	 * and the result maps every requested uri to its tests. A document whose fetch was superseded by a
+	 * fetch of its newer content is left out.
+	 */
+	public Map<String, List<TestSuite>> fetchTestsBatch(List<Object> arguments, IProgressMonitor monitor) {
+		if (arguments == null || arguments.size() == 0) {
+			return Collections.emptyMap();
+		}
+		LinkedHashSet<String> uris = new LinkedHashSet<>();
+		for (Object argument : arguments) {
+			if (argument instanceof String) {
+				uris.add((String) argument);
+			} else if (argument instanceof List) {
+				for (Object uri : (List<?>) argument) {
+					uris.add((String) uri);
+				}
+			}
+		}
+		Map<String, List<TestSuite>> fetched = new ConcurrentHashMap<>();
+		uris.parallelStream().forEach(uri -> {
+			List<TestSuite> tests = fetchTests(uri, monitor);
+			if (tests != null) {
+				fetched.put(uri, tests);
+			}
+		});
+		if (monitor.isCanceled()) {
+			return Collections.emptyMap();
+		}
+		Map<String, List<TestSuite>> results = new LinkedHashMap<>();
+		for (String uri : uris) {
+			List<TestSuite> tests = fetched.get(uri);
+			if (tests != null) {
+				results.put(uri, tests);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Fetches the tests of a document relative to the version of them the client has, given as the
+	 * optional second argument. Falls back to the full result when the versions don't match. Returns
+	 * <code>null</code> when the fetch was canceled or superseded, the client keeps its version then.
+	 */
+	public TestSuiteDelta fetchTestsDelta(List<Object> arguments, IProgressMonitor monitor) {
+		if (arguments == null || arguments.size() == 0) {
+			return null;
+		}
 		String uri = (String)arguments.get(0);
+		Integer clientVersion = arguments.size() > 1 && arguments.get(1) instanceof Number
+				? ((Number) arguments.get(1)).intValue()
+				: null;
+		List<TestSuite> tests = fetchTests(uri, monitor);
+		if (tests == null || monitor.isCanceled()) {
+			return null;
+		}
+		return TestDeltaCache.getInstance().update(uri, clientVersion, tests);
+	}
+
+	/**
+	 * Fetches the tests of a document. Concurrent fetches of the same content share one computation
+	 * through the {@link TestFetchCoalescer}.
+	 *
+	 * @return the tests, or <code>null</code> when the fetch was canceled or superseded
+	 */
+	private List<TestSuite> fetchTests(String uri, IProgressMonitor monitor) {
 		final ICompilationUnit unit = JDTUtils.resolveCompilationUnit(uri);
-		if (unit == null || !unit.getResource().exists() || monitor.isCanceled()) {
+		if (monitor.isCanceled()) {
+			return null;
+		}
+		if (unit == null || !unit.getResource().exists()) {
 			return Collections.emptyList();
 		}
+		return TestFetchCoalescer.getInstance().fetch(uri, getContentKey(unit), m -> fetchTests(unit, m), monitor);
+	}
+
+	private static long getContentKey(ICompilationUnit unit) {
+		try {
+			String source = unit.getSource();
+			return source == null ? 0 : ((long) source.length() << 32) ^ (source.hashCode() & 0xffffffffL);
+		} catch (JavaModelException e) {
+			return 0;
+		}
+	}
+
+	private List<TestSuite> fetchTests(ICompilationUnit unit, IProgressMonitor monitor) {
 		try {
 			IJavaElement[] elements = unit.getChildren();
 			RelationShipCache relations = new RelationShipCache();
-			List<TestSuite> lenses = fetchCore(unit, elements, monitor, relations);
+			LineStartTable lines = LineStartTable.create(unit);
+			List<TestSuite> lenses = fetchCore(unit, elements, monitor, relations, lines);
 			relations.ToIndex(lenses, monitor);
 			if (monitor.isCanceled()) {
 				lenses.clear();
@@ -63,7 +154,7 @@ public class JUnitTestFetcher {
 		return Collections.emptyList();
 	}
 	
-	private List<TestSuite> fetchCore(ICompilationUnit unit, IJavaElement[] elements, IProgressMonitor monitor, RelationShipCache relations) throws JavaModelException {
+	private List<TestSuite> fetchCore(ICompilationUnit unit, IJavaElement[] elements, IProgressMonitor monitor, RelationShipCache relations, LineStartTable lines) throws JavaModelException {
 		ArrayList<TestSuite> suites = new ArrayList<>(elements.length);
 		String uri = getUri(unit);
 		for (IJavaElement element : elements) {
@@ -75,12 +166,12 @@ public class JUnitTestFetcher {
 				if (!JUnitUtility.isAccessibleClass(type) || Flags.isAbstract(type.getFlags())) {
 					continue;
 				}
-				List<TestSuite> children = fetchCore(unit, type.getChildren(), monitor, relations);
+				List<TestSuite> children = fetchCore(unit, type.getChildren(), monitor, relations, lines);
 				suites.addAll(children);
 				if (children.size() > 0 || type.getAnnotation("RunWith").exists()) {
 					String test = type.getFullyQualifiedName();
 					TestSuite cur = new TestSuite(
-							getRange(unit, element),
+							lines.getNameRange(element),
 							uri,
 							test,
 							type.getPackageFragment().getElementName(),
@@ -98,7 +189,7 @@ public class JUnitTestFetcher {
 					IType type = ((IMethod)element).getDeclaringType();
 					String test = type.getFullyQualifiedName() + "#" + element.getElementName();
 					suites.add(new TestSuite(
-							getRange(unit, element),
+							lines.getNameRange(element),
 							uri,
 							test,
 							type.getPackageFragment().getElementName(),
@@ -109,12 +200,6 @@ public class JUnitTestFetcher {
 		return suites;
 	}
 	
-	private Range getRange(ICompilationUnit typeRoot, IJavaElement element) throws JavaModelException {
-		ISourceRange r = ((ISourceReference) element).getNameRange();
-		final Range range = JDTUtils.toRange(typeRoot, r.getOffset(), r.getLength());
-		return range;
-	}
-	
 	private String getUri(ICompilationUnit typeRoot) {
 		return ResourceUtils.toClientUri(JDTUtils.toUri(typeRoot));
 	}
@@ -11,24 +11,35 @@
 package com.microsoft.java.test.plugin.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.IAnnotatable;
+import org.eclipse.jdt.core.IAnnotation;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IMemberValuePair;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IRegion;
-import org.eclipse.jdt.core.ISourceRange;
-import org.eclipse.jdt.core.ISourceReference;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.ITypeHierarchy;
 import org.eclipse.jdt.core.JavaCore;
@@ -42,16 +53,100 @@ import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.SearchRequestor;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.ResourceUtils;
-import org.eclipse.lsp4j.Range;
 
+import com.microsoft.java.test.plugin.internal.TestCatalogCache.UnitTests;
 import com.microsoft.java.test.plugin.internal.testsuit.TestLevel;
 import com.microsoft.java.test.plugin.internal.testsuit.TestSuite;
 
 public class JUnitTestSearcher {
 	private final String JUNIT_TEST_ANNOTATION = "org.junit.Test";
 	private final String JUNIT_RUN_WITH_ANNOTATION = "org.junit.runner.RunWith";
+	private static final String JUNIT_CATEGORY_ANNOTATION = "org.junit.experimental.categories.Category";
 
-	public List<TestSuite> searchAllTests(IProgressMonitor monitor) {
+	/**
+	 * Searches the tests of the workspace. Only the test source folders of the projects are searched,
+	 * unless the first argument is <code>true</code>, or a project has no test source folder. The tests
+	 * of the compilation units which did not change since the last search are taken from the
+	 * {@link TestCatalogCache}.
+	 */
+	public List<TestSuite> searchAllTests(List<Object> arguments, IProgressMonitor monitor) {
+		boolean allSources = arguments != null && arguments.size() > 0 && Boolean.TRUE.equals(arguments.get(0));
+		List<TestSuite> tests = new ArrayList<>();
+		for (UnitTests unit : searchUnits(allSources, monitor)) {
+			relocate(unit.getTests(), null, tests);
+		}
+		return tests;
+	}
+
+	/**
+	 * Searches the tests of the workspace carrying an annotation, or belonging to a JUnit category,
+	 * given by its fully qualified name as the first argument. A class carrying it is returned with
+	 * all its tests, a method carrying it with its class. The second argument selects all sources, like
+	 * the first argument of {@link #searchAllTests(List, IProgressMonitor)}.
+	 */
+	public List<TestSuite> searchTaggedTests(List<Object> arguments, IProgressMonitor monitor) {
+		if (arguments == null || arguments.isEmpty() || !(arguments.get(0) instanceof String)) {
+			return Collections.emptyList();
+		}
+		String tag = (String) arguments.get(0);
+		boolean allSources = arguments.size() > 1 && Boolean.TRUE.equals(arguments.get(1));
+		List<TestSuite> tests = new ArrayList<>();
+		for (UnitTests unit : searchUnits(allSources, monitor)) {
+			List<Integer> tagged = unit.getTags().get(tag);
+			if (tagged != null) {
+				relocate(unit.getTests(), select(unit.getTests(), tagged), tests);
+			}
+		}
+		return tests;
+	}
+
+	private Collection<UnitTests> searchUnits(boolean allSources, IProgressMonitor monitor) {
+		TestCatalogCache cache = TestCatalogCache.getInstance();
+		Map<ICompilationUnit, UnitTests> unitTests = new LinkedHashMap<>();
+		List<ICompilationUnit> staleUnits = new ArrayList<>();
+		try {
+			for (IJavaProject project : JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects()) {
+				String projectName = project.getElementName();
+				cache.checkClasspath(projectName, Arrays.hashCode(project.getResolvedClasspath(true)));
+				Set<String> uris = new HashSet<>();
+				for (IPackageFragmentRoot root : getSearchRoots(project, allSources)) {
+					for (IJavaElement child : root.getChildren()) {
+						for (ICompilationUnit unit : ((IPackageFragment) child).getCompilationUnits()) {
+							String uri = getUri(unit);
+							uris.add(uri);
+							UnitTests cached = isSaved(unit) ? cache.get(projectName, uri, getStamp(unit)) : null;
+							unitTests.put(unit, cached);
+							if (cached == null) {
+								staleUnits.add(unit);
+							}
+						}
+					}
+				}
+				cache.retain(projectName, uris);
+			}
+			if (!staleUnits.isEmpty()) {
+				Map<ICompilationUnit, UnitTests> found = searchTests(staleUnits, monitor);
+				for (ICompilationUnit unit : staleUnits) {
+					UnitTests tests = found.getOrDefault(unit, UnitTests.EMPTY);
+					unitTests.put(unit, tests);
+					if (isSaved(unit)) {
+						cache.put(unit.getJavaProject().getElementName(), getUri(unit), getStamp(unit), tests);
+					}
+				}
+			}
+		} catch (CoreException e) {
+			// ignore
+		}
+		cache.scheduleSave();
+		unitTests.values().removeIf(unit -> unit == null);
+		return unitTests.values();
+	}
+
+	/**
+	 * Finds the tests of the given units, with the indices of the tests relative to each unit.
+	 */
+	private Map<ICompilationUnit, UnitTests> searchTests(List<ICompilationUnit> units, IProgressMonitor monitor)
+			throws CoreException {
 		SearchPattern runWithPattern = SearchPattern.createPattern(JUNIT_RUN_WITH_ANNOTATION,
 				IJavaSearchConstants.ANNOTATION_TYPE, IJavaSearchConstants.ANNOTATION_TYPE_REFERENCE,
 				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
@@ -59,8 +154,8 @@ public class JUnitTestSearcher {
 				IJavaSearchConstants.ANNOTATION_TYPE, IJavaSearchConstants.ANNOTATION_TYPE_REFERENCE,
 				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
 		SearchPattern pattern = SearchPattern.createOrPattern(runWithPattern, testPattern);
-		List<TestSuite> tests = new ArrayList<>();
-		HashSet<IType> testClasses = new HashSet<>();
+		Map<ICompilationUnit, Set<IType>> testClasses = new LinkedHashMap<>();
+		Map<ICompilationUnit, LineStartTable> lines = new HashMap<>();
 
 		SearchRequestor requestor = new SearchRequestor() {
 			@Override
@@ -71,27 +166,34 @@ public class JUnitTestSearcher {
 					IMember member = (IMember) element;
 					IType type = member.getElementType() == IJavaElement.TYPE ? (IType) member
 							: member.getDeclaringType();
-					testClasses.add(type);
+					testClasses.computeIfAbsent(type.getCompilationUnit(), u -> new LinkedHashSet<>()).add(type);
 				}
 			}
 		};
 
-		try {
-			IJavaSearchScope scope = createSearchScope();
-			new SearchEngine().search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() },
-					scope, requestor, monitor);
-			for (IType type : testClasses) {
+		IJavaSearchScope scope = SearchEngine.createJavaSearchScope(units.toArray(new IJavaElement[units.size()]),
+				IJavaSearchScope.SOURCES);
+		new SearchEngine().search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() },
+				scope, requestor, monitor);
+		Map<ICompilationUnit, UnitTests> result = new HashMap<>();
+		for (Map.Entry<ICompilationUnit, Set<IType>> entry : testClasses.entrySet()) {
+			List<TestSuite> tests = new ArrayList<>();
+			Map<String, List<Integer>> tags = new HashMap<>();
+			Map<String, Set<String>> categories = new HashMap<>();
+			for (IType type : entry.getValue()) {
 				if (JUnitUtility.isAccessibleClass(type) && !Flags.isAbstract(type.getFlags())) {
-					TestSuite parent = getTestSuite(type);
+					TestSuite parent = getTestSuite(type, lines);
 					tests.add(parent);
 					int parentIndex = tests.size() - 1;
+					addTags(type, type, parentIndex, tags, categories, monitor);
 					int childIndex = parentIndex + 1;
 					List<Integer> children = new ArrayList<>();
 					for (IMethod m : type.getMethods()) {
 						if (JUnitUtility.isTestMethod(m, "Test")) {
-							TestSuite child = getTestSuite(m);
+							TestSuite child = getTestSuite(m, lines);
 							child.setParent(parentIndex);
 							tests.add(child);
+							addTags(m, type, childIndex, tags, categories, monitor);
 							children.add(childIndex);
 							childIndex++;
 						}
@@ -99,34 +201,210 @@ public class JUnitTestSearcher {
 					parent.setChildren(children);
 				}
 			}
-		} catch (CoreException e) {
-			// ignore
+			result.put(entry.getKey(), new UnitTests(tests, tags));
+		}
+		return result;
+	}
+
+	/**
+	 * Indexes a test under the fully qualified names of its annotations, and of the categories given
+	 * to its JUnit <code>@Category</code> annotation. <code>@Category</code> is inherited, so a class
+	 * without one takes the categories of its nearest superclass which has one.
+	 */
+	private static void addTags(IAnnotatable member, IType type, int index, Map<String, List<Integer>> tags,
+			Map<String, Set<String>> categories, IProgressMonitor monitor) throws JavaModelException {
+		boolean categorized = false;
+		for (IAnnotation annotation : member.getAnnotations()) {
+			String name = resolveType(type, annotation.getElementName());
+			addTag(name, index, tags);
+			if (JUNIT_CATEGORY_ANNOTATION.equals(name)) {
+				addCategories(annotation, type, index, tags, categories, monitor);
+				categorized = true;
+			}
+		}
+		if (member != type || categorized || type.getSuperclassName() == null) {
+			return;
+		}
+		ITypeHierarchy hierarchy = type.newSupertypeHierarchy(monitor);
+		for (IType superclass : hierarchy.getAllSuperclasses(type)) {
+			for (IAnnotation annotation : superclass.getAnnotations()) {
+				if (JUNIT_CATEGORY_ANNOTATION.equals(resolveType(superclass, annotation.getElementName()))) {
+					addCategories(annotation, superclass, index, tags, categories, monitor);
+					return;
+				}
+			}
 		}
-		return tests;
 	}
 
-	private static IJavaSearchScope createSearchScope() throws JavaModelException {
-		IJavaProject[] projects = JavaCore.create(ResourcesPlugin.getWorkspace().getRoot()).getJavaProjects();
-		return SearchEngine.createJavaSearchScope(projects, IJavaSearchScope.SOURCES);
+	/**
+	 * Indexes a test under the categories of a <code>@Category</code> annotation, and under their
+	 * supertypes, since the <code>Categories</code> runner also includes the tests of sub-categories.
+	 */
+	private static void addCategories(IAnnotation annotation, IType type, int index, Map<String, List<Integer>> tags,
+			Map<String, Set<String>> categories, IProgressMonitor monitor) throws JavaModelException {
+		for (IMemberValuePair pair : annotation.getMemberValuePairs()) {
+			if (!"value".equals(pair.getMemberName()) || pair.getValueKind() != IMemberValuePair.K_CLASS) {
+				continue;
+			}
+			Object[] values = pair.getValue() instanceof Object[] ? (Object[]) pair.getValue()
+					: new Object[] { pair.getValue() };
+			for (Object value : values) {
+				if (value instanceof String) {
+					String category = resolveType(type, (String) value);
+					for (String name : getCategoryTypes(type.getJavaProject(), category, categories, monitor)) {
+						addTag(name, index, tags);
+					}
+				}
+			}
+		}
 	}
 
-	private TestSuite getTestSuite(IMember member) throws JavaModelException {
+	/**
+	 * Returns a category with its supertypes, the ones already found in this search are taken from
+	 * <code>categories</code>.
+	 */
+	private static Set<String> getCategoryTypes(IJavaProject project, String category,
+			Map<String, Set<String>> categories, IProgressMonitor monitor) throws JavaModelException {
+		Set<String> names = categories.get(category);
+		if (names != null) {
+			return names;
+		}
+		names = new LinkedHashSet<>();
+		names.add(category);
+		IType type = project.findType(category);
+		if (type != null) {
+			for (IType supertype : type.newSupertypeHierarchy(monitor).getAllSupertypes(type)) {
+				names.add(supertype.getFullyQualifiedName('.'));
+			}
+			names.remove(Object.class.getName());
+		}
+		categories.put(category, names);
+		return names;
+	}
+
+	private static void addTag(String name, int index, Map<String, List<Integer>> tags) {
+		List<Integer> tagged = tags.computeIfAbsent(name, n -> new ArrayList<>());
+		if (!tagged.contains(index)) {
+			tagged.add(index);
+		}
+	}
+
+	private static String resolveType(IType type, String name) throws JavaModelException {
+		String[][] resolved = type.resolveType(name);
+		if (resolved == null || resolved.length == 0) {
+			return name;
+		}
+		return resolved[0][0].isEmpty() ? resolved[0][1] : resolved[0][0] + "." + resolved[0][1];
+	}
+
+	/**
+	 * Returns the indices of the tagged tests, with the tests of the tagged classes and the classes of
+	 * the tagged methods.
+	 */
+	private static Set<Integer> select(List<TestSuite> unit, List<Integer> tagged) {
+		Set<Integer> selection = new HashSet<>();
+		for (Integer index : tagged) {
+			TestSuite test = unit.get(index);
+			selection.add(index);
+			if (test.getParent() != null) {
+				selection.add(test.getParent());
+			}
+			if (test.getLevel() == TestLevel.Class && test.getChildren() != null) {
+				selection.addAll(test.getChildren());
+			}
+		}
+		return selection;
+	}
+
+	private static List<IPackageFragmentRoot> getSearchRoots(IJavaProject project, boolean allSources)
+			throws JavaModelException {
+		List<IPackageFragmentRoot> testRoots = allSources ? Collections.emptyList()
+				: ProjectUtils.getTestSourceRoots(project);
+		if (!testRoots.isEmpty()) {
+			return testRoots;
+		}
+		List<IPackageFragmentRoot> roots = new ArrayList<>();
+		for (IPackageFragmentRoot root : project.getPackageFragmentRoots()) {
+			if (root.getKind() == IPackageFragmentRoot.K_SOURCE) {
+				roots.add(root);
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * Appends copies of the selected tests of a unit, all of them when the selection is
+	 * <code>null</code>, with their indices moved after the tests already there. The tests of the unit
+	 * are shared with the cache, so they are left as they are.
+	 */
+	private static void relocate(List<TestSuite> unit, Set<Integer> selection, List<TestSuite> tests) {
+		Map<Integer, Integer> indices = new HashMap<>();
+		for (int i = 0; i < unit.size(); i++) {
+			if (selection == null || selection.contains(i)) {
+				indices.put(i, tests.size() + indices.size());
+			}
+		}
+		for (int i = 0; i < unit.size(); i++) {
+			if (!indices.containsKey(i)) {
+				continue;
+			}
+			TestSuite test = unit.get(i);
+			TestSuite copy = new TestSuite(test.getRange(), test.getUri(), test.getTest(), test.getPackageName(),
+					test.getLevel());
+			if (test.getParent() != null) {
+				copy.setParent(indices.get(test.getParent()));
+			}
+			if (test.getChildren() != null) {
+				List<Integer> children = new ArrayList<>(test.getChildren().size());
+				for (Integer child : test.getChildren()) {
+					if (indices.containsKey(child)) {
+						children.add(indices.get(child));
+					}
+				}
+				copy.setChildren(children);
+			}
+			tests.add(copy);
+		}
+	}
+
+	private static boolean isSaved(ICompilationUnit unit) {
+		return !unit.isWorkingCopy() || !hasUnsavedChanges(unit);
+	}
+
+	private static boolean hasUnsavedChanges(ICompilationUnit unit) {
+		try {
+			return unit.hasUnsavedChanges();
+		} catch (JavaModelException e) {
+			return true;
+		}
+	}
+
+	private static long getStamp(ICompilationUnit unit) {
+		IResource resource = unit.getResource();
+		return resource == null ? IResource.NULL_STAMP : resource.getLocalTimeStamp();
+	}
+
+	private static String getUri(ICompilationUnit unit) {
+		return ResourceUtils.toClientUri(JDTUtils.toUri(unit));
+	}
+
+	private TestSuite getTestSuite(IMember member, Map<ICompilationUnit, LineStartTable> lines) throws JavaModelException {
 		ICompilationUnit unit = member.getCompilationUnit();
-		String uri = ResourceUtils.toClientUri(JDTUtils.toUri(unit));
+		String uri = getUri(unit);
+		LineStartTable table = lines.get(unit);
+		if (table == null) {
+			table = LineStartTable.create(unit);
+			lines.put(unit, table);
+		}
 		if (member.getElementType() == IJavaElement.TYPE) {
 			IType type = (IType) member;
-			return new TestSuite(getRange(unit, member), uri, type.getFullyQualifiedName(),
+			return new TestSuite(table.getNameRange(member), uri, type.getFullyQualifiedName(),
 					type.getPackageFragment().getElementName(), TestLevel.Class);
 		} else {
 			IType type = ((IMethod) member).getDeclaringType();
-			return new TestSuite(getRange(unit, member), uri,
+			return new TestSuite(table.getNameRange(member), uri,
 					type.getFullyQualifiedName() + "#" + member.getElementName(),
 					type.getPackageFragment().getElementName(), TestLevel.Method);
 		}
 	}
-
-	private Range getRange(ICompilationUnit typeRoot, IJavaElement element) throws JavaModelException {
-		ISourceRange r = ((ISourceReference) element).getNameRange();
-		return JDTUtils.toRange(typeRoot, r.getOffset(), r.getLength());
-	}
 }
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.ISourceReference;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.ls.core.internal.JDTUtils;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * The start offsets of the lines of a compilation unit, built once from its source so the ranges of
+ * all its test elements can be computed without resolving the document for every element.
+ */
+public class LineStartTable {
+	private final ICompilationUnit unit;
+	private final int[] lineStarts;
+
+	private LineStartTable(ICompilationUnit unit, int[] lineStarts) {
+		this.unit = unit;
+		this.lineStarts = lineStarts;
+	}
+
+	public static LineStartTable create(ICompilationUnit unit) throws JavaModelException {
+		String source = unit.getSource();
+		if (source == null) {
+			return new LineStartTable(unit, null);
+		}
+		int[] lineStarts = new int[16];
+		int lines = 1;
+		int length = source.length();
+		for (int i = 0; i < length; i++) {
+			char c = source.charAt(i);
+			if (c == '\r' && i + 1 < length && source.charAt(i + 1) == '\n') {
+				i++;
+			} else if (c != '\r' && c != '\n') {
+				continue;
+			}
+			if (lines == lineStarts.length) {
+				lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+			}
+			lineStarts[lines++] = i + 1;
+		}
+		return new LineStartTable(unit, Arrays.copyOf(lineStarts, lines));
+	}
+
+	/**
+	 * Returns the range of the name of a source element of the compilation unit.
+	 */
+	public Range getNameRange(IJavaElement element) throws JavaModelException {
+		ISourceRange r = ((ISourceReference) element).getNameRange();
+		return toRange(r.getOffset(), r.getLength());
+	}
+
+	public Range toRange(int offset, int length) throws JavaModelException {
+		if (lineStarts == null) {
+			return JDTUtils.toRange(unit, offset, length);
+		}
+		if (offset < 0) {
+			// no source range, e.g. a binary member, like JDTUtils.toRange
+			return new Range(new Position(0, 0), new Position(0, 0));
+		}
+		return new Range(toPosition(offset), toPosition(offset + length));
+	}
+
+	private Position toPosition(int offset) {
+		int line = Arrays.binarySearch(lineStarts, offset);
+		if (line < 0) {
+			line = -line - 2;
+		}
+		return new Position(line, offset - lineStarts[line]);
+	}
+}
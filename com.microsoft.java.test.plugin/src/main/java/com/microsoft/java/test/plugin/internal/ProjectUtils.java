@@ -12,7 +12,9 @@ package com.microsoft.java.test.plugin.internal;
 
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,11 +25,16 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
 
 public class ProjectUtils {
-	
+	private static final String TEST_ATTRIBUTE = "test";
+
 	public static Set<IJavaProject> parseProjects(URI rootFolderURI) {
 		IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
 		IProject[] projects = workspaceRoot.getProjects();
@@ -60,6 +67,38 @@ public class ProjectUtils {
         return null;
     }
     
+    /**
+     * Returns the source folders of the project holding tests: the ones marked with the
+     * <code>test</code> classpath attribute, or following the <code>src/test/...</code> convention.
+     */
+    public static List<IPackageFragmentRoot> getTestSourceRoots(IJavaProject project) throws JavaModelException {
+        List<IPackageFragmentRoot> roots = new ArrayList<>();
+        for (IPackageFragmentRoot root : project.getPackageFragmentRoots()) {
+            if (root.getKind() == IPackageFragmentRoot.K_SOURCE && isTestSourceRoot(root)) {
+                roots.add(root);
+            }
+        }
+        return roots;
+    }
+
+    private static boolean isTestSourceRoot(IPackageFragmentRoot root) throws JavaModelException {
+        IClasspathEntry entry = root.getRawClasspathEntry();
+        if (entry != null) {
+            for (IClasspathAttribute attribute : entry.getExtraAttributes()) {
+                if (TEST_ATTRIBUTE.equals(attribute.getName())) {
+                    return Boolean.parseBoolean(attribute.getValue());
+                }
+            }
+        }
+        String[] segments = root.getPath().segments();
+        for (int i = 0; i < segments.length - 1; i++) {
+            if ("src".equals(segments[i]) && "test".equals(segments[i + 1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static IPath filePathFromURI(URI uri) {
     	if ("file".equals(uri.getScheme())) {
 			return Path.fromOSString(Paths.get(uri).toString());
@@ -0,0 +1,129 @@
+/*******************************************************************************
+* Copyright (c) 2017 Microsoft Corporation and others.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*     Microsoft Corporation - initial API and implementation
+*******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Maintains the class data sharing (AppCDS) archives used to speed up the start of the test runner JVM.
+ * An archive covers the runner jar and the library jars leading the runtime class path, as the JVM can't
+ * archive a class path with non-empty folders. It is keyed by the path, size and modification time of
+ * these jars, so a rebuilt jar gets a new archive. A test run without an archive records the classes it
+ * loads with <code>-XX:DumpLoadedClassList</code>, the client then dumps a static archive of that class
+ * list on the archived jars, and hands it to the later runs with <code>-XX:SharedArchiveFile</code>.
+ */
+public class SharedArchiveResolver {
+	private static final String ARCHIVE_FOLDER = "cds";
+	private static final String ARCHIVE_EXTENSION = ".jsa";
+	private static final String CLASS_LIST_EXTENSION = ".classlist";
+	private static final int MAX_ARCHIVES = 16;
+
+	/**
+	 * Resolves the archive of a class path.
+	 *
+	 * @param arguments the archived jars in class path order, starting with the runner jar
+	 * @return the archive, or <code>null</code> when the jars can't be archived
+	 */
+	public SharedArchive resolveSharedArchive(List<Object> arguments) throws CoreException {
+		IPath stateLocation = JUnitPlugin.getStateLocation();
+		if (arguments == null || arguments.isEmpty() || stateLocation == null) {
+			return null;
+		}
+		List<File> jars = new ArrayList<>();
+		for (Object argument : arguments) {
+			File jar = new File((String) argument);
+			if (!jar.isFile()) {
+				return null;
+			}
+			jars.add(jar);
+		}
+		String key = hash(jars);
+		if (key == null) {
+			return null;
+		}
+		File folder = stateLocation.append(ARCHIVE_FOLDER).toFile();
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			return null;
+		}
+		File archive = new File(folder, key + ARCHIVE_EXTENSION);
+		File classList = new File(folder, key + CLASS_LIST_EXTENSION);
+		prune(folder, ARCHIVE_EXTENSION, archive);
+		prune(folder, CLASS_LIST_EXTENSION, classList);
+		return new SharedArchive(archive.getAbsolutePath(), classList.getAbsolutePath(), archive.exists());
+	}
+
+	private static String hash(List<File> jars) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (File jar : jars) {
+				String entry = jar.getAbsolutePath() + File.pathSeparatorChar + jar.length() + File.pathSeparatorChar
+						+ jar.lastModified() + File.pathSeparatorChar;
+				digest.update(entry.getBytes(StandardCharsets.UTF_8));
+			}
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest()) {
+				builder.append(String.format("%02x", b));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	private static void prune(File folder, String extension, File current) {
+		File[] archives = folder.listFiles((dir, name) -> name.endsWith(extension));
+		if (archives == null || archives.length <= MAX_ARCHIVES) {
+			return;
+		}
+		Arrays.sort(archives, Comparator.comparingLong(File::lastModified).reversed());
+		for (int i = MAX_ARCHIVES; i < archives.length; i++) {
+			if (!archives[i].equals(current)) {
+				archives[i].delete();
+			}
+		}
+	}
+
+	public static class SharedArchive {
+		private String archive;
+
+		private String classList;
+
+		private boolean exists;
+
+		public SharedArchive(String archive, String classList, boolean exists) {
+			this.archive = archive;
+			this.classList = classList;
+			this.exists = exists;
+		}
+
+		public String getArchive() {
+			return archive;
+		}
+
+		public String getClassList() {
+			return classList;
+		}
+
+		public boolean exists() {
+			return exists;
+		}
+	}
+}
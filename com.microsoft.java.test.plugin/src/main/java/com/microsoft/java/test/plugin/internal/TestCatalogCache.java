@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuite;
+
+/**
+ * Remembers the tests found in every compilation unit, keyed by project and by the time stamp of the
+ * unit, so the workspace search only analyzes the units that changed. The units of a project are
+ * searched again when its resolved class path changed, as the tests found depend on it. Along with the tests, every unit
+ * keeps an index from the annotations and JUnit categories of its tests to the tests. The catalog is
+ * kept in the state location of the plugin across restarts of the language server, it is saved shortly
+ * after a search changed it, so it survives a language server which is killed rather than stopped.
+ */
+public class TestCatalogCache {
+	private static final int FORMAT_VERSION = 3;
+	private static final String CATALOG_FILE = "tests.json";
+	private static final long SAVE_DELAY = 5000;
+
+	private static final TestCatalogCache INSTANCE = new TestCatalogCache();
+
+	private Catalog catalog = new Catalog();
+	private boolean dirty;
+
+	private final Job saveJob = new Job("Save the test catalog") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			save();
+			return Status.OK_STATUS;
+		}
+	};
+
+	private TestCatalogCache() {
+		saveJob.setSystem(true);
+	}
+
+	public static TestCatalogCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the tests of a unit when they were found in the same version of the unit, otherwise
+	 * <code>null</code>. The indices of the tests are relative to the unit.
+	 */
+	public synchronized UnitTests get(String project, String uri, long stamp) {
+		Map<String, Entry> units = catalog.projects.get(project);
+		Entry entry = units == null ? null : units.get(uri);
+		return entry == null || entry.stamp != stamp ? null : entry.unit;
+	}
+
+	public synchronized void put(String project, String uri, long stamp, UnitTests unit) {
+		catalog.projects.computeIfAbsent(project, p -> new HashMap<>()).put(uri, new Entry(stamp, unit));
+		dirty = true;
+	}
+
+	/**
+	 * Forgets the units of a project when its resolved class path is not the one they were found with,
+	 * e.g. they were searched before the libraries of the project were resolved.
+	 */
+	public synchronized void checkClasspath(String project, int classpath) {
+		Integer known = catalog.classpaths.put(project, classpath);
+		if (known == null || known != classpath) {
+			catalog.projects.remove(project);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Forgets the units of a project which are not in the given set, such as deleted files.
+	 */
+	public synchronized void retain(String project, Set<String> uris) {
+		Map<String, Entry> units = catalog.projects.get(project);
+		if (units != null && units.keySet().retainAll(uris)) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Saves the catalog when it changed, once no search changed it for a few seconds, so a burst of
+	 * searches writes it once.
+	 */
+	public void scheduleSave() {
+		synchronized (this) {
+			if (!dirty) {
+				return;
+			}
+		}
+		// scheduling a job which is already waiting keeps its delay, a pending save starts over
+		saveJob.cancel();
+		saveJob.schedule(SAVE_DELAY);
+	}
+
+	public synchronized void load() {
+		File file = getCatalogFile();
+		if (file == null || !file.isFile()) {
+			return;
+		}
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			Catalog loaded = new Gson().fromJson(reader, Catalog.class);
+			if (loaded != null && loaded.version == FORMAT_VERSION && loaded.projects != null
+					&& loaded.classpaths != null) {
+				catalog = loaded;
+			}
+		} catch (IOException | JsonParseException e) {
+			// start with an empty catalog
+		}
+		dirty = false;
+	}
+
+	public synchronized void save() {
+		File file = getCatalogFile();
+		if (file == null || !dirty) {
+			return;
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+				new Gson().toJson(catalog, writer);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			dirty = false;
+		} catch (IOException e) {
+			temp.delete();
+		}
+	}
+
+	private static File getCatalogFile() {
+		return JUnitPlugin.getStateLocation() == null ? null
+				: JUnitPlugin.getStateLocation().append(CATALOG_FILE).toFile();
+	}
+
+	private static class Catalog {
+		int version = FORMAT_VERSION;
+		Map<String, Map<String, Entry>> projects = new HashMap<>();
+		Map<String, Integer> classpaths = new HashMap<>();
+	}
+
+	/**
+	 * The tests of a compilation unit, and the indices of the tests carrying every annotation or JUnit
+	 * category, by fully qualified name.
+	 */
+	public static class UnitTests {
+		public static final UnitTests EMPTY = new UnitTests(Collections.emptyList(), Collections.emptyMap());
+
+		private final List<TestSuite> tests;
+		private final Map<String, List<Integer>> tags;
+
+		public UnitTests(List<TestSuite> tests, Map<String, List<Integer>> tags) {
+			this.tests = tests;
+			this.tags = tags;
+		}
+
+		public List<TestSuite> getTests() {
+			return tests;
+		}
+
+		public Map<String, List<Integer>> getTags() {
+			return tags;
+		}
+	}
+
+	private static class Entry {
+		long stamp;
+		UnitTests unit;
+
+		Entry(long stamp, UnitTests unit) {
+			this.stamp = stamp;
+			this.unit = unit;
+		}
+	}
+}
@@ -20,17 +20,32 @@ import org.eclipse.jdt.ls.core.internal.IDelegateCommandHandler;
 public class TestDelegateCommandHandler implements IDelegateCommandHandler {
 
     public static String FETCH_TEST = "vscode.java.test.fetch";
+    public static String FETCH_TEST_BATCH = "vscode.java.test.fetch.batch";
+    public static String FETCH_TEST_DELTA = "vscode.java.test.fetch.delta";
     public static String SEARCH_ALL_TEST = "vscode.java.test.search.all";
+    public static String SEARCH_TAGGED_TEST = "vscode.java.test.search.tagged";
+    public static String SEARCH_BYTECODE_TEST = "vscode.java.test.search.bytecode";
     public static String COMPUTE_RUNTIME_CLASSPATH = "vscode.java.test.runtime.classpath";
+    public static String RESOLVE_SHARED_ARCHIVE = "vscode.java.test.runtime.cds";
 
     @Override
     public Object executeCommand(String commandId, List<Object> arguments, IProgressMonitor monitor) throws Exception {
         if (FETCH_TEST.equals(commandId)) {
             return new JUnitTestFetcher().fetchTests(arguments, monitor);
+        } else if (FETCH_TEST_BATCH.equals(commandId)) {
+            return new JUnitTestFetcher().fetchTestsBatch(arguments, monitor);
+        } else if (FETCH_TEST_DELTA.equals(commandId)) {
+            return new JUnitTestFetcher().fetchTestsDelta(arguments, monitor);
         } else if (COMPUTE_RUNTIME_CLASSPATH.equals(commandId)) {
         	return new RuntimeClassPathResolver().resolveRunTimeClassPath(arguments);
         } else if (SEARCH_ALL_TEST.equals(commandId)) {
-        	return new JUnitTestSearcher().searchAllTests(monitor);
+        	return new JUnitTestSearcher().searchAllTests(arguments, monitor);
+        } else if (SEARCH_TAGGED_TEST.equals(commandId)) {
+        	return new JUnitTestSearcher().searchTaggedTests(arguments, monitor);
+        } else if (SEARCH_BYTECODE_TEST.equals(commandId)) {
+        	return new BytecodeTestSearcher().searchAllTests(arguments, monitor);
+        } else if (RESOLVE_SHARED_ARCHIVE.equals(commandId)) {
+        	return new SharedArchiveResolver().resolveSharedArchive(arguments);
         }
         throw new UnsupportedOperationException(String.format("Java test plugin doesn't support the command '%s'.", commandId));
     }
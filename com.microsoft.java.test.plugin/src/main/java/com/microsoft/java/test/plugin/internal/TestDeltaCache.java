@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuite;
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuiteDelta;
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuiteDelta.MovedTest;
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuiteDelta.TestRelation;
+
+/**
+ * Remembers the last tests returned for every document, so repeated fetches of the same document
+ * only send what changed since the version the client has.
+ */
+public class TestDeltaCache {
+	private static final int MAX_DOCUMENTS = 64;
+
+	private static final TestDeltaCache INSTANCE = new TestDeltaCache();
+
+	private final Map<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+			return size() > MAX_DOCUMENTS;
+		}
+	};
+
+	private int lastVersion;
+
+	public static TestDeltaCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Remembers the tests of a document and returns them relative to the version the client has.
+	 *
+	 * @param uri the document
+	 * @param clientVersion the version of the tests the client has, or <code>null</code>
+	 * @param tests the current tests of the document
+	 * @return a delta when the client has the last remembered version, otherwise the full result
+	 */
+	public synchronized TestSuiteDelta update(String uri, Integer clientVersion, List<TestSuite> tests) {
+		Snapshot previous = snapshots.get(uri);
+		Snapshot current = new Snapshot(++lastVersion, tests);
+		snapshots.put(uri, current);
+		if (previous == null || clientVersion == null || previous.version != clientVersion) {
+			return TestSuiteDelta.full(current.version, tests);
+		}
+
+		Map<String, TestSuite> previousTests = new HashMap<>();
+		for (TestSuite test : previous.tests) {
+			previousTests.put(test.getTest(), test);
+		}
+		List<TestSuite> added = new ArrayList<>();
+		List<MovedTest> moved = new ArrayList<>();
+		for (TestSuite test : tests) {
+			TestSuite old = previousTests.remove(test.getTest());
+			if (old == null) {
+				added.add(test);
+			} else if (!Objects.equals(old.getRange(), test.getRange())) {
+				moved.add(new MovedTest(test.getTest(), test.getRange()));
+			}
+		}
+		List<String> removed = new ArrayList<>(previousTests.keySet());
+
+		// indices of the tests only hold while no test is added, removed or reordered
+		List<TestRelation> order = null;
+		if (!added.isEmpty() || !removed.isEmpty() || !sameOrder(previous.tests, tests)) {
+			order = new ArrayList<>(tests.size());
+			for (TestSuite test : tests) {
+				order.add(new TestRelation(test.getTest(), test.getParent(), test.getChildren()));
+			}
+		}
+		return TestSuiteDelta.delta(current.version, added, removed, moved, order);
+	}
+
+	private static boolean sameOrder(List<TestSuite> previous, List<TestSuite> current) {
+		if (previous.size() != current.size()) {
+			return false;
+		}
+		for (int i = 0; i < current.size(); i++) {
+			if (!previous.get(i).getTest().equals(current.get(i).getTest())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Snapshot {
+		final int version;
+		final List<TestSuite> tests;
+
+		Snapshot(int version, List<TestSuite> tests) {
+			this.version = version;
+			this.tests = tests;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.plugin.internal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.microsoft.java.test.plugin.internal.testsuit.TestSuite;
+
+/**
+ * Lets concurrent fetches of the same document share one computation. A fetch of a newer content of
+ * the document cancels the computation in flight for the older content, which nobody will display.
+ */
+public class TestFetchCoalescer {
+	private static final long POLL_INTERVAL = 50;
+
+	private static final TestFetchCoalescer INSTANCE = new TestFetchCoalescer();
+
+	private final Map<String, Flight> flights = new HashMap<>();
+
+	public static TestFetchCoalescer getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Fetches the tests of a document, or waits for the fetch of the same content already in flight.
+	 *
+	 * @param uri the document
+	 * @param contentKey identifies the content of the document being fetched
+	 * @param fetch computes the tests, it must stop when the given monitor is canceled
+	 * @param monitor the monitor of the request
+	 * @return the tests, or <code>null</code> when the request was canceled or the computation was
+	 *         superseded by a fetch of newer content, so it can't be mistaken for a document without tests
+	 */
+	public List<TestSuite> fetch(String uri, long contentKey, Function<IProgressMonitor, List<TestSuite>> fetch,
+			IProgressMonitor monitor) {
+		Flight flight;
+		boolean owner = false;
+		synchronized (flights) {
+			flight = flights.get(uri);
+			if (flight != null && flight.contentKey == contentKey && !flight.monitor.isCanceled()) {
+				flight.waiters.incrementAndGet();
+			} else {
+				if (flight != null) {
+					flight.monitor.setCanceled(true);
+				}
+				flight = new Flight(contentKey, monitor);
+				flights.put(uri, flight);
+				owner = true;
+			}
+		}
+
+		if (owner) {
+			try {
+				List<TestSuite> tests = fetch.apply(flight.monitor);
+				// a canceled computation stops early, with whatever it found so far
+				flight.result.complete(flight.monitor.isCanceled() ? null : tests);
+			} catch (RuntimeException e) {
+				flight.result.completeExceptionally(e);
+				throw e;
+			} finally {
+				synchronized (flights) {
+					flights.remove(uri, flight);
+				}
+			}
+			return flight.result.getNow(null);
+		}
+
+		try {
+			while (true) {
+				try {
+					return flight.result.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					if (monitor.isCanceled()) {
+						return null;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		} finally {
+			flight.waiters.decrementAndGet();
+		}
+	}
+
+	private static class Flight {
+		final long contentKey;
+		final CompletableFuture<List<TestSuite>> result = new CompletableFuture<>();
+		final AtomicInteger waiters = new AtomicInteger();
+		final FlightMonitor monitor;
+
+		Flight(long contentKey, IProgressMonitor ownerMonitor) {
+			this.contentKey = contentKey;
+			this.monitor = new FlightMonitor(ownerMonitor, waiters);
+		}
+	}
+
+	/**
+	 * Canceled when a newer fetch supersedes the computation, or when the request which started it is
+	 * canceled and no other request waits for it.
+	 */
+	private static class FlightMonitor extends NullProgressMonitor {
+		private final IProgressMonitor ownerMonitor;
+		private final AtomicInteger waiters;
+
+		FlightMonitor(IProgressMonitor ownerMonitor, AtomicInteger waiters) {
+			this.ownerMonitor = ownerMonitor;
+			this.waiters = waiters;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || (ownerMonitor.isCanceled() && waiters.get() == 0);
+		}
+	}
+}
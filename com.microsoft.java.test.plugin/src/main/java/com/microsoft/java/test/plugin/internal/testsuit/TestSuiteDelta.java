@@ -0,0 +1,121 @@
+package com.microsoft.java.test.plugin.internal.testsuit;
+
+import java.util.List;
+
+import org.eclipse.lsp4j.Range;
+
+/**
+ * The tests of a document relative to a version of them the client already has. A full result
+ * carries all <code>tests</code>; a delta carries the <code>added</code> and <code>removed</code>
+ * tests and the <code>moved</code> ranges, plus the new <code>order</code> of the tests when tests
+ * were added or removed.
+ */
+public class TestSuiteDelta {
+	private int version;
+
+	private boolean full;
+
+	private List<TestSuite> tests;
+
+	private List<TestSuite> added;
+
+	private List<String> removed;
+
+	private List<MovedTest> moved;
+
+	private List<TestRelation> order;
+
+	public static TestSuiteDelta full(int version, List<TestSuite> tests) {
+		TestSuiteDelta delta = new TestSuiteDelta(version, true);
+		delta.tests = tests;
+		return delta;
+	}
+
+	public static TestSuiteDelta delta(int version, List<TestSuite> added, List<String> removed, List<MovedTest> moved,
+			List<TestRelation> order) {
+		TestSuiteDelta delta = new TestSuiteDelta(version, false);
+		delta.added = added;
+		delta.removed = removed;
+		delta.moved = moved;
+		delta.order = order;
+		return delta;
+	}
+
+	private TestSuiteDelta(int version, boolean full) {
+		this.version = version;
+		this.full = full;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public boolean isFull() {
+		return full;
+	}
+
+	public List<TestSuite> getTests() {
+		return tests;
+	}
+
+	public List<TestSuite> getAdded() {
+		return added;
+	}
+
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	public List<MovedTest> getMoved() {
+		return moved;
+	}
+
+	public List<TestRelation> getOrder() {
+		return order;
+	}
+
+	public static class MovedTest {
+		private String test;
+
+		private Range range;
+
+		public MovedTest(String test, Range range) {
+			this.test = test;
+			this.range = range;
+		}
+
+		public String getTest() {
+			return test;
+		}
+
+		public Range getRange() {
+			return range;
+		}
+	}
+
+	public static class TestRelation {
+		private String test;
+
+		private Integer parentIndex;
+
+		private List<Integer> childrenIndices;
+
+		public TestRelation(String test, Integer parentIndex, List<Integer> childrenIndices) {
+			this.test = test;
+			this.parentIndex = parentIndex;
+			this.childrenIndices = childrenIndices;
+		}
+
+		public String getTest() {
+			return test;
+		}
+
+		public Integer getParent() {
+			return parentIndex;
+		}
+
+		public List<Integer> getChildren() {
+			return childrenIndices;
+		}
+	}
+}
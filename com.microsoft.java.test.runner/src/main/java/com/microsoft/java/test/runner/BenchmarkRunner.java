@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.junit.internal.runners.statements.FailOnTimeout;
+import org.junit.runner.Description;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
+
+/**
+ * Runs every test method of a class as a microbenchmark: the method is invoked for a number of
+ * warmup iterations, then for a number of measured iterations, on the same test instance and within
+ * one <code>@Before</code> and <code>@After</code>. The timings of the measured iterations are kept
+ * until the test is reported with {@link #takeStatistics(Description)}.
+ *
+ * <p>A method expecting an exception runs once, like with the default runner.
+ *
+ * <p>The timeout of <code>@Test(timeout = ...)</code> applies to every iteration on its own, not to
+ * all of them together. A timeout rule still covers the whole benchmark, with its setup and teardown.
+ */
+public class BenchmarkRunner extends BlockJUnit4ClassRunner {
+    private static final Map<Description, Statistics> statistics = new ConcurrentHashMap<>();
+
+    private final int warmup;
+    private final int iterations;
+
+    /**
+     * Creates a runner.
+     *
+     * @param testClass the test class
+     * @param warmup number of iterations which are not measured
+     * @param iterations number of measured iterations
+     * @throws InitializationError if the test class is malformed
+     */
+    public BenchmarkRunner(Class<?> testClass, int warmup, int iterations) throws InitializationError {
+        super(testClass);
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Returns and forgets the timings of a test.
+     *
+     * @param description describes the test
+     * @return the timings, or <code>null</code> when the test didn't run as a benchmark or failed
+     */
+    public static Statistics takeStatistics(Description description) {
+        return statistics.remove(description);
+    }
+
+    @Override
+    protected Statement methodInvoker(final FrameworkMethod method, Object test) {
+        final Statement invoker = super.methodInvoker(method, test);
+        if (!isBenchmark(method)) {
+            return invoker;
+        }
+        final long timeout = method.getAnnotation(Test.class).timeout();
+        final Description description = describeChild(method);
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                long[] timings = new long[iterations];
+                for (int i = 0; i < warmup + iterations; i++) {
+                    Statement iteration = new TimedIteration(invoker, timings, i - warmup);
+                    if (timeout > 0) {
+                        iteration = new FailOnTimeout(iteration, timeout);
+                    }
+                    iteration.evaluate();
+                }
+                statistics.put(description, new Statistics(warmup, timings));
+            }
+        };
+    }
+
+    @Override
+    protected Statement withPotentialTimeout(FrameworkMethod method, Object test, Statement next) {
+        // the timeout applies to every iteration, see methodInvoker
+        return isBenchmark(method) ? next : super.withPotentialTimeout(method, test, next);
+    }
+
+    private static boolean isBenchmark(FrameworkMethod method) {
+        Test annotation = method.getAnnotation(Test.class);
+        return annotation == null || annotation.expected() == Test.None.class;
+    }
+
+    /** Runs one iteration, and stores its time unless it is a warmup iteration. */
+    private static class TimedIteration extends Statement {
+        private final Statement invoker;
+        private final long[] timings;
+        private final int index;
+
+        TimedIteration(Statement invoker, long[] timings, int index) {
+            this.invoker = invoker;
+            this.timings = timings;
+            this.index = index;
+        }
+
+        @Override
+        public void evaluate() throws Throwable {
+            // timed here, so the thread of a timeout is not counted
+            long start = System.nanoTime();
+            invoker.evaluate();
+            if (index >= 0) {
+                timings[index] = System.nanoTime() - start;
+            }
+        }
+    }
+
+    /** Timings of the measured iterations of a test, in nanoseconds. */
+    public static final class Statistics {
+        private final int warmup;
+        private final int iterations;
+        private final long min;
+        private final long mean;
+        private final long p50;
+        private final long p99;
+        private final long max;
+
+        Statistics(int warmup, long[] timings) {
+            long[] sorted = timings.clone();
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long timing : sorted) {
+                total += timing;
+            }
+            this.warmup = warmup;
+            this.iterations = sorted.length;
+            this.min = sorted[0];
+            this.mean = total / sorted.length;
+            this.p50 = percentile(sorted, 50);
+            this.p99 = percentile(sorted, 99);
+            this.max = sorted[sorted.length - 1];
+        }
+
+        /** Returns the value at a percentile of sorted timings, with the nearest rank method. */
+        private static long percentile(long[] sorted, int percentile) {
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+
+        public int getWarmup() {
+            return warmup;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+}
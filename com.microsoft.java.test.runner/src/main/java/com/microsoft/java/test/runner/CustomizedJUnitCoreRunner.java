@@ -10,10 +10,14 @@
  */
 package com.microsoft.java.test.runner;
 
+import java.util.Collections;
+import java.util.Map;
+
+import com.microsoft.java.test.runner.jfr.TestEventRecorder;
 import com.microsoft.java.test.runner.listeners.CustomizedJUnitTestListener;
 import com.microsoft.java.test.runner.listeners.JUnitExecutionListener;
-import java.util.List;
 
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import org.junit.runner.notification.RunListener;
@@ -23,31 +27,88 @@ public class CustomizedJUnitCoreRunner extends JUnitCore {
     private CustomizedJUnitTestListener listener;
     public void run(String[] suites) {
         createListener();
-        List<JUnit4TestReference> newSuites = TestRunnerUtil.createTestReferences(suites);
+        boolean lazy = TestRunnerOptions.isLazyRunners();
+        Iterable<JUnit4TestReference> newSuites = lazy
+                ? TestRunnerUtil.createLazyTestReferences(suites)
+                : TestRunnerUtil.createTestReferences(suites);
+        StartupProfiler.phaseFinished(StartupProfiler.DISCOVERY);
 
-        if (newSuites.isEmpty()) {
-            TestingMessageHelper.reporterAttached(System.out);
+        if (!newSuites.iterator().hasNext()) {
+            TestingMessageHelper.reporterAttached(ReportChannel.getStream());
             return;
         }
 
+        TestEventRecorder recorder = TestEventRecorder.create();
         RunNotifier runNotifier = new RunNotifier();
-        runNotifier.addListener(new JUnitExecutionListener(listener));
+        JUnitExecutionListener executionListener = new JUnitExecutionListener(listener, recorder);
+        runNotifier.addListener(executionListener);
         listener.testRunStarted();
+        recorder.runStarted();
 
-        for (JUnit4TestReference jUnit4TestReference : newSuites) {
-            jUnit4TestReference.sendTree(listener);
+        StartupProfiler.phaseFinished(StartupProfiler.SETUP);
+        if (!lazy) {
+            for (JUnit4TestReference jUnit4TestReference : newSuites) {
+                jUnit4TestReference.sendTree(listener);
+            }
         }
+        StartupProfiler.phaseFinished(StartupProfiler.TREE);
 
         Result result = new Result();
         final RunListener resultListener = result.createListener();
         runNotifier.addListener(resultListener);
+        TestResultJournal journal = TestResultJournal.create();
+        if (journal != null) {
+            runNotifier.addListener(journal);
+        }
+
+        TestResultCache cache = TestResultCache.create();
+        if (cache != null) {
+            runNotifier.addListener(cache);
+        }
+
+        TestWatchdog watchdog = TestWatchdog.create(listener);
+        if (watchdog != null) {
+            runNotifier.addListener(watchdog);
+            watchdog.start();
+        }
 
         for (JUnit4TestReference testReference : newSuites) {
-            testReference.run(runNotifier);
+            if (lazy) {
+                testReference.sendTree(listener);
+            }
+            Map<Description, Long> cached = cache != null
+                    ? cache.classStarted(testReference)
+                    : Collections.<Description, Long>emptyMap();
+            if (!cached.isEmpty() && cached.size() == testReference.countTestCases()) {
+                reportCached(executionListener, cached);
+                continue;
+            }
+            if (executionListener.classStarted(testReference.getDescription(), runNotifier)) {
+                if (watchdog != null) {
+                    watchdog.run(testReference, runNotifier);
+                } else {
+                    testReference.run(runNotifier);
+                }
+                // after the tests which ran, so the first of them still starts the suite with its setup
+                reportCached(executionListener, cached);
+            }
+            executionListener.classFinished(testReference.getDescription(), runNotifier);
+            if (cache != null) {
+                cache.classFinished();
+            }
+        }
+        if (watchdog != null) {
+            watchdog.stop();
         }
         runNotifier.fireTestRunFinished(result);
     }
 
+    private static void reportCached(JUnitExecutionListener executionListener, Map<Description, Long> cached) {
+        for (Map.Entry<Description, Long> test : cached.entrySet()) {
+            executionListener.testCached(test.getKey(), test.getValue());
+        }
+    }
+
     private void createListener() {
         listener = new CustomizedJUnitTestListener();
         this.addListener(new JUnitExecutionListener(listener));
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Samples the retained heap at suite boundaries and attributes the growth to the suite that just
+ * finished, so test classes leaving static caches, threads or listeners behind can be spotted.
+ * A suite is sampled when its class level teardown has run. The classes of a suite class have no
+ * boundaries of their own, they are sampled when the next class starts, so their growth also
+ * includes the class level setup of that class.
+ */
+public class HeapGrowthTracker {
+    private static final Comparator<HeapGrowth> BY_GROWTH = Comparator.comparingLong(HeapGrowth::getGrowth);
+
+    private final boolean collectGarbage;
+    private final int top;
+    private final PriorityQueue<HeapGrowth> worstOffenders;
+    private long lastSample = -1;
+
+    public HeapGrowthTracker(boolean collectGarbage, int top) {
+        this.collectGarbage = collectGarbage;
+        this.top = Math.max(top, 0);
+        this.worstOffenders = new PriorityQueue<>(this.top + 1, BY_GROWTH);
+    }
+
+    /** Called when test suite starts. Takes the baseline sample for the first suite. */
+    public void suiteStarted() {
+        if (lastSample < 0) {
+            lastSample = sample();
+        }
+    }
+
+    /**
+     * Called when test suite finished.
+     *
+     * @param suite name of test suite
+     * @return the heap growth attributed to the suite, in bytes
+     */
+    public long suiteFinished(String suite) {
+        long current = sample();
+        long growth = lastSample < 0 ? 0 : current - lastSample;
+        lastSample = current;
+        if (growth > 0 && top > 0) {
+            worstOffenders.offer(new HeapGrowth(suite, growth));
+            if (worstOffenders.size() > top) {
+                worstOffenders.poll();
+            }
+        }
+        return growth;
+    }
+
+    /** Returns the suites with the largest heap growth, largest first. */
+    public List<HeapGrowth> getWorstOffenders() {
+        List<HeapGrowth> offenders = new ArrayList<>(worstOffenders);
+        Collections.sort(offenders, BY_GROWTH.reversed());
+        return offenders;
+    }
+
+    private long sample() {
+        if (collectGarbage) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Heap growth attributed to a suite. */
+    public static class HeapGrowth {
+        private final String name;
+        private final long growth;
+
+        public HeapGrowth(String name, long growth) {
+            this.name = name;
+            this.growth = growth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getGrowth() {
+            return growth;
+        }
+    }
+}
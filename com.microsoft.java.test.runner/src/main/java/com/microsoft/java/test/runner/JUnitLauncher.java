@@ -10,15 +10,40 @@
  */
 package com.microsoft.java.test.runner;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 public class JUnitLauncher
 {
     public static void main(String[] args) {
+        StartupProfiler.start();
+        if (TestRunnerOptions.isRerun()) {
+            args = getFailedTests(TestRunnerOptions.getJournal(), TestRunnerOptions.isRerunClasses());
+        }
         if (args.length == 0) {
-            TestingMessageHelper.reporterAttached(System.out);
+            TestingMessageHelper.reporterAttached(ReportChannel.getStream());
             System.err.print("No test found to run");
         } else {
             CustomizedJUnitCoreRunner jUnitCore = new CustomizedJUnitCoreRunner();
             jUnitCore.run(args);
         }
+        ReportChannel.close();
+    }
+
+    private static String[] getFailedTests(File journal, boolean wholeClasses) {
+        if (journal == null) {
+            System.err.println("Failed tests can't be rerun without " + TestRunnerOptions.JOURNAL);
+            return new String[0];
+        }
+        if (!journal.isFile()) {
+            return new String[0];
+        }
+        try {
+            List<String> tests = TestResultJournal.readFailedTests(journal, wholeClasses);
+            return tests.toArray(new String[tests.size()]);
+        } catch (IOException e) {
+            return new String[0];
+        }
     }
 }
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+
+/**
+ * Writes a JUnit XML report in the format of the Maven Surefire plugin for every test class, as
+ * <code>TEST-class.xml</code>. The test cases are streamed to a <code>.part</code> file as they
+ * finish, so nothing but the current test is held in memory. When the class has run, the report is
+ * written with the counts of the class, synced to the disk, and the part file is removed. A crash
+ * leaves the reports of the finished classes intact, and the part file of the current class.
+ */
+public class JUnitXmlReport {
+    private static final String REPORT_PREFIX = "TEST-";
+    private static final String REPORT_EXTENSION = ".xml";
+    private static final String PART_EXTENSION = ".part";
+    private static final String ENCODING = "UTF-8";
+
+    private final File folder;
+    private final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+    private String suite;
+    private long suiteStart;
+    private File part;
+    private OutputStream partStream;
+    private XMLStreamWriter writer;
+    private int tests;
+    private int failures;
+    private int errors;
+    private int skipped;
+
+    private Description currentTest;
+    private long currentTestStart;
+    private final List<Failure> currentFailures = new ArrayList<>();
+    private boolean currentTestSkipped;
+
+    public JUnitXmlReport(File folder) {
+        this.folder = folder;
+    }
+
+    /** Creates the report configured by the runner options, or <code>null</code> when it is off. */
+    public static JUnitXmlReport create() {
+        File folder = TestRunnerOptions.getXmlReports();
+        return folder == null ? null : new JUnitXmlReport(folder);
+    }
+
+    /**
+     * Called before a test class runs, starts its part file.
+     *
+     * @param description the description of the test class
+     */
+    public synchronized void classStarted(Description description) {
+        suite = description.getClassName();
+        suiteStart = System.currentTimeMillis();
+        tests = failures = errors = skipped = 0;
+        part = new File(folder, getReportName(suite) + PART_EXTENSION);
+        try {
+            if (!folder.isDirectory() && !folder.mkdirs()) {
+                throw new IOException("Can't create " + folder);
+            }
+            partStream = new FileOutputStream(part);
+            writer = factory.createXMLStreamWriter(partStream, ENCODING);
+        } catch (IOException | XMLStreamException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Called when an atomic test is about to be started.
+     *
+     * @param description the description of the test
+     */
+    public synchronized void testStarted(Description description) {
+        currentTest = description;
+        currentTestStart = System.currentTimeMillis();
+        currentFailures.clear();
+        currentTestSkipped = false;
+    }
+
+    /**
+     * Called when an atomic test has finished, whether the test succeeds or fails.
+     *
+     * @param description the description of the test
+     */
+    public synchronized void testFinished(Description description) {
+        if (description.equals(currentTest)) {
+            long duration = System.currentTimeMillis() - currentTestStart;
+            writeTestCase(description, duration, currentFailures, currentTestSkipped);
+        }
+        currentTest = null;
+        currentFailures.clear();
+    }
+
+    /**
+     * Called when a test or the whole class fails.
+     *
+     * @param failure describes the failure
+     */
+    public synchronized void testFailure(Failure failure) {
+        if (failure.getDescription().equals(currentTest)) {
+            currentFailures.add(failure);
+        } else {
+            // the class level setup or teardown, reported as a test case of its own
+            List<Failure> classFailures = new ArrayList<>();
+            classFailures.add(failure);
+            writeTestCase(failure.getDescription(), 0, classFailures, false);
+        }
+    }
+
+    /**
+     * Called when a test is skipped by a failed assumption.
+     *
+     * @param failure describes the failed assumption
+     */
+    public synchronized void testAssumptionFailure(Failure failure) {
+        if (failure.getDescription().equals(currentTest)) {
+            currentTestSkipped = true;
+        }
+    }
+
+    /**
+     * Called when a test will not be run.
+     *
+     * @param description the description of the test
+     */
+    public synchronized void testIgnored(Description description) {
+        writeTestCase(description, 0, new ArrayList<Failure>(), true);
+    }
+
+    /** Called when the test class has run, writes its report and removes the part file. */
+    public synchronized void classFinished() {
+        if (writer == null) {
+            return;
+        }
+        File report = new File(folder, getReportName(suite) + REPORT_EXTENSION);
+        File temp = new File(folder, report.getName() + ".tmp");
+        try {
+            writer.close();
+            partStream.close();
+            writer = null;
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                XMLStreamWriter header = factory.createXMLStreamWriter(out, ENCODING);
+                header.writeStartDocument(ENCODING, "1.0");
+                header.writeCharacters("\n");
+                header.writeStartElement("testsuite");
+                header.writeAttribute("name", suite);
+                header.writeAttribute("tests", String.valueOf(tests));
+                header.writeAttribute("failures", String.valueOf(failures));
+                header.writeAttribute("errors", String.valueOf(errors));
+                header.writeAttribute("skipped", String.valueOf(skipped));
+                header.writeAttribute("time", toSeconds(System.currentTimeMillis() - suiteStart));
+                header.writeAttribute(
+                        "timestamp",
+                        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT).format(new Date(suiteStart)));
+                header.writeCharacters("\n");
+                header.flush();
+                // the test cases are copied as they are, the writer only closes the suite element
+                Files.copy(part.toPath(), out);
+                header.writeEndElement();
+                header.writeCharacters("\n");
+                header.writeEndDocument();
+                header.close();
+                out.getFD().sync();
+            }
+            Files.move(temp.toPath(), report.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(part.toPath());
+        } catch (IOException | XMLStreamException e) {
+            failed(e);
+        }
+    }
+
+    private void writeTestCase(Description description, long duration, List<Failure> testFailures, boolean skip) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            boolean empty = testFailures.isEmpty() && !skip;
+            writer.writeCharacters("  ");
+            if (empty) {
+                writer.writeEmptyElement("testcase");
+            } else {
+                writer.writeStartElement("testcase");
+            }
+            writer.writeAttribute(
+                    "name",
+                    description.getMethodName() != null ? description.getMethodName() : description.getClassName());
+            writer.writeAttribute("classname", description.getClassName());
+            writer.writeAttribute("time", toSeconds(duration));
+            boolean failed = false;
+            boolean error = false;
+            for (Failure failure : testFailures) {
+                boolean assertion = failure.getException() instanceof AssertionError;
+                failed |= assertion;
+                error |= !assertion;
+                writer.writeCharacters("\n    ");
+                writer.writeStartElement(assertion ? "failure" : "error");
+                if (failure.getMessage() != null) {
+                    writer.writeAttribute("message", sanitize(failure.getMessage()));
+                }
+                writer.writeAttribute("type", failure.getException().getClass().getName());
+                writer.writeCharacters(sanitize(failure.getTrace()));
+                writer.writeEndElement();
+            }
+            if (skip && testFailures.isEmpty()) {
+                writer.writeCharacters("\n    ");
+                writer.writeEmptyElement("skipped");
+                skipped++;
+            }
+            if (!empty) {
+                writer.writeCharacters("\n  ");
+                writer.writeEndElement();
+            }
+            writer.writeCharacters("\n");
+            writer.flush();
+            tests++;
+            if (error) {
+                errors++;
+            } else if (failed) {
+                failures++;
+            }
+        } catch (XMLStreamException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(Exception e) {
+        System.err.println("Failed to write the XML report of " + suite + " to " + folder + ": " + e.getMessage());
+        writer = null;
+        if (partStream != null) {
+            try {
+                partStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String getReportName(String suite) {
+        return REPORT_PREFIX + suite.replaceAll("[^\\w.$-]", "_");
+    }
+
+    private static String toSeconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    /** Replaces the characters XML 1.0 doesn't allow, e.g. control characters in a message. */
+    private static String sanitize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder builder = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == 0xfffe || c == 0xffff) {
+                if (builder == null) {
+                    builder = new StringBuilder(text);
+                }
+                builder.setCharAt(i, '?');
+            }
+        }
+        return builder == null ? text : builder.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Stream the events of the run are written to. It is the standard output unless {@link
+ * TestRunnerOptions#REPORT} names a loopback port or a Unix domain socket, in which case the events
+ * are buffered and flushed periodically, and whatever the tests print stays out of the event stream.
+ */
+public final class ReportChannel {
+    private static final String TCP_PREFIX = "tcp:";
+    private static final String UNIX_PREFIX = "unix:";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL = 200;
+
+    private static PrintStream stream;
+
+    private ReportChannel() {}
+
+    /** Returns the event stream, connecting to the report channel on the first call. */
+    public static synchronized PrintStream getStream() {
+        if (stream == null) {
+            stream = open(TestRunnerOptions.getReport());
+        }
+        return stream;
+    }
+
+    /** Flushes the pending events and closes the report channel, if any. */
+    public static synchronized void close() {
+        if (stream == null) {
+            return;
+        }
+        stream.flush();
+        if (stream != System.out) {
+            stream.close();
+        }
+    }
+
+    /**
+     * Connects to the given channel. The events go to the standard output when no channel is given
+     * or when it cannot be reached, since the standard error is read as a failure of the run.
+     */
+    private static PrintStream open(String channel) {
+        if (channel == null || channel.isEmpty()) {
+            return System.out;
+        }
+        OutputStream out;
+        try {
+            if (channel.startsWith(TCP_PREFIX)) {
+                out = connectTcp(channel.substring(TCP_PREFIX.length()));
+            } else if (channel.startsWith(UNIX_PREFIX)) {
+                out = connectUnix(channel.substring(UNIX_PREFIX.length()));
+            } else {
+                return System.out;
+            }
+        } catch (IOException | RuntimeException | ReflectiveOperationException e) {
+            return System.out;
+        }
+
+        final PrintStream channelStream;
+        try {
+            channelStream = new PrintStream(new BufferedOutputStream(out, BUFFER_SIZE), false, "UTF-8");
+        } catch (IOException e) {
+            return System.out;
+        }
+        Thread flusher = new Thread("Test report flusher") {
+            @Override
+            public void run() {
+                // checkError flushes the stream, and stops the flushes once the peer is gone
+                do {
+                    try {
+                        Thread.sleep(FLUSH_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                } while (!channelStream.checkError());
+            }
+        };
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(channelStream::flush));
+        return channelStream;
+    }
+
+    /** Connects to <code>[host:]port</code>, the host being the loopback address by default. */
+    private static OutputStream connectTcp(String address) throws IOException {
+        int separator = address.lastIndexOf(':');
+        InetAddress host = separator == -1 ? InetAddress.getLoopbackAddress()
+                : InetAddress.getByName(address.substring(0, separator));
+        int port = Integer.parseInt(address.substring(separator + 1));
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        return socket.getOutputStream();
+    }
+
+    /**
+     * Connects to a Unix domain socket. They are supported from Java 16 on, so the address is created
+     * reflectively to keep the runner working on older JVMs.
+     */
+    private static OutputStream connectUnix(String path) throws IOException, ReflectiveOperationException {
+        SocketAddress address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                .getMethod("of", String.class).invoke(null, path);
+        ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+        SocketChannel channel = (SocketChannel) SocketChannel.class.getMethod("open", ProtocolFamily.class)
+                .invoke(null, unix);
+        channel.connect(address);
+        return Channels.newOutputStream(channel);
+    }
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the phases between the start of the JVM and the start of the first test: the JVM startup, the
+ * discovery of the tests, the setup of the listeners and recorders, the report of the test tree and
+ * the run until the first test starts. They are reported once, when the first test starts, or when
+ * the run finishes if no test started, e.g. when every test is cached or ignored.
+ */
+public final class StartupProfiler {
+    public static final String JVM = "jvm";
+    public static final String DISCOVERY = "discovery";
+    public static final String SETUP = "setup";
+    public static final String TREE = "tree";
+    public static final String FIRST_TEST = "firstTest";
+    public static final String RUN = "run";
+
+    private static final List<TestRunStatistics.Timing> phases = new ArrayList<>();
+    private static long jvmStartTime;
+    private static long lastMark;
+    private static volatile boolean reported;
+
+    private StartupProfiler() {}
+
+    /** Called when the launcher starts, ends the JVM startup phase. */
+    public static synchronized void start() {
+        if (jvmStartTime != 0) {
+            return;
+        }
+        jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        lastMark = jvmStartTime;
+        phaseFinished(JVM);
+    }
+
+    /**
+     * Ends a phase, which started when the previous one ended.
+     *
+     * @param phase name of the phase
+     */
+    public static synchronized void phaseFinished(String phase) {
+        start();
+        long now = System.currentTimeMillis();
+        phases.add(new TestRunStatistics.Timing(phase, now - lastMark));
+        lastMark = now;
+    }
+
+    /**
+     * Reports the startup phases when the first test starts, does nothing afterwards.
+     *
+     * @param out output stream
+     */
+    public static void firstTestStarted(PrintStream out) {
+        report(out, FIRST_TEST);
+    }
+
+    /**
+     * Reports the startup phases when the run finishes without any test started, the last phase
+     * lasting until the end of the run.
+     *
+     * @param out output stream
+     */
+    public static void runFinished(PrintStream out) {
+        report(out, RUN);
+    }
+
+    private static void report(PrintStream out, String lastPhase) {
+        if (reported) {
+            return;
+        }
+        synchronized (StartupProfiler.class) {
+            if (reported) {
+                return;
+            }
+            phaseFinished(lastPhase);
+            reported = true;
+            TestingMessageHelper.startupTiming(out, lastMark - jvmStartTime, phases);
+        }
+    }
+}
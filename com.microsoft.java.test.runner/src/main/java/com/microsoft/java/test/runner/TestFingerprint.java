@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprints test classes by the bytecode they can run. The fingerprint of a class covers the
+ * bytecode of every class of the class path folders it references, directly or through other such
+ * classes, the content of the resources in these folders, and the path, size and modification time
+ * of the jars. A change to code the class can't reach leaves its fingerprint unchanged.
+ *
+ * <p>The references are read from the constant pools. A class named by a string constant is found,
+ * and so are the classes named in the resources, e.g. service provider files, which every test class
+ * reaches. The name of a package, in a string constant or a resource, reaches all the classes of the
+ * package and its subpackages, as a component scan does. Only the classes reached through names
+ * built at runtime are missed.
+ *
+ * <p>The <code>Class-Path</code> of the jar manifests is expanded like the class loader does. A jar
+ * holding nothing but its manifest, such as the one a long class path is passed in, only counts
+ * through its entries.
+ */
+public class TestFingerprint {
+    private static final String CLASS_EXTENSION = ".class";
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;<>]+)[;<]");
+    private static final Pattern QUALIFIED_NAME =
+            Pattern.compile("\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*"
+                    + "(?:[./]\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*)+");
+    private static final String MANIFEST_FOLDER = "META-INF/";
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /** Class files of the class path folders by internal name. */
+    private final Map<String, Path> classFiles = new HashMap<>();
+    /** Internal names of the classes of the class path folders by package. */
+    private final NavigableMap<String, List<String>> packageClasses = new TreeMap<>();
+    /** Qualified names found in the resources of the class path folders. */
+    private final Set<String> resourceNames = new LinkedHashSet<>();
+    private final Set<String> resourceClasses = new TreeSet<>();
+    private final Map<String, byte[]> classDigests = new HashMap<>();
+    private final Map<String, Set<String>> classReferences = new HashMap<>();
+    private final byte[] environment;
+
+    private TestFingerprint(String classPath) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, System.getProperty("java.version"));
+        update(digest, System.getProperty("java.home"));
+        for (File file : getClassPathFiles(classPath)) {
+            update(digest, file.getPath());
+            if (file.isDirectory()) {
+                indexFolder(file.toPath(), digest);
+            } else if (file.isFile()) {
+                update(digest, file.length() + ":" + file.lastModified());
+            }
+        }
+        environment = digest.digest();
+        for (String name : resourceNames) {
+            addReference(resourceClasses, name);
+        }
+    }
+
+    /**
+     * Indexes the class path of this JVM, with the <code>Class-Path</code> of its jars expanded.
+     *
+     * @return the fingerprints of the classes on the class path
+     * @throws IOException if a class path folder can't be read
+     */
+    public static TestFingerprint create() throws IOException {
+        return new TestFingerprint(System.getProperty("java.class.path", ""));
+    }
+
+    /**
+     * Returns the fingerprint of a test class.
+     *
+     * @param className the binary name of the test class
+     * @return the fingerprint as a hex string
+     * @throws IOException if a class file can't be read
+     */
+    public String of(String className) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(environment);
+        update(digest, className);
+        for (String reachable : getReachableClasses(className.replace('.', '/'))) {
+            update(digest, reachable);
+            digest.update(getClassDigest(reachable));
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private Set<String> getReachableClasses(String internalName) throws IOException {
+        Set<String> reachable = new TreeSet<>(resourceClasses);
+        Deque<String> pending = new ArrayDeque<>(resourceClasses);
+        if (classFiles.containsKey(internalName) && reachable.add(internalName)) {
+            pending.add(internalName);
+        }
+        while (!pending.isEmpty()) {
+            for (String reference : getClassReferences(pending.poll())) {
+                if (reachable.add(reference)) {
+                    pending.add(reference);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private byte[] getClassDigest(String internalName) throws IOException {
+        byte[] classDigest = classDigests.get(internalName);
+        if (classDigest == null) {
+            classDigest = newDigest().digest(Files.readAllBytes(classFiles.get(internalName)));
+            classDigests.put(internalName, classDigest);
+        }
+        return classDigest;
+    }
+
+    private Set<String> getClassReferences(String internalName) throws IOException {
+        Set<String> references = classReferences.get(internalName);
+        if (references == null) {
+            references = new LinkedHashSet<>();
+            // the constant pool names every class the bytecode uses, either in a class constant, a
+            // descriptor or a signature, and a string constant may name a class loaded reflectively
+            for (String utf8 : readUtf8Constants(Files.readAllBytes(classFiles.get(internalName)))) {
+                addReference(references, utf8);
+                addReference(references, utf8.replace('.', '/'));
+                if (utf8.indexOf('L') != -1) {
+                    Matcher matcher = DESCRIPTOR_CLASS.matcher(utf8);
+                    while (matcher.find()) {
+                        addReference(references, matcher.group(1));
+                    }
+                }
+            }
+            references.remove(internalName);
+            classReferences.put(internalName, references);
+        }
+        return references;
+    }
+
+    private void addReference(Set<String> references, String name) {
+        if (classFiles.containsKey(name)) {
+            references.add(name);
+        } else if (!name.isEmpty()) {
+            // a package, with its subpackages, '0' follows '/' in the sort order
+            Map<String, List<String>> candidates = packageClasses.subMap(name, true, name + "0", false);
+            for (Map.Entry<String, List<String>> entry : candidates.entrySet()) {
+                if (entry.getKey().equals(name) || entry.getKey().startsWith(name + "/")) {
+                    references.addAll(entry.getValue());
+                }
+            }
+        }
+    }
+
+    private void indexFolder(Path folder, MessageDigest digest) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.filter(Files::isRegularFile).forEach(files::add);
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            String relative = folder.relativize(file).toString().replace(File.separatorChar, '/');
+            if (relative.endsWith(CLASS_EXTENSION)) {
+                String internalName = relative.substring(0, relative.length() - CLASS_EXTENSION.length());
+                // the first folder wins, like in the class loader
+                if (!classFiles.containsKey(internalName)) {
+                    classFiles.put(internalName, file);
+                    int packageIndex = internalName.lastIndexOf('/');
+                    packageClasses
+                            .computeIfAbsent(
+                                    packageIndex == -1 ? "" : internalName.substring(0, packageIndex),
+                                    p -> new ArrayList<>())
+                            .add(internalName);
+                }
+            } else {
+                byte[] content = Files.readAllBytes(file);
+                update(digest, relative);
+                digest.update(content);
+                // a service provider file or a configuration may name classes loaded reflectively
+                Matcher matcher = QUALIFIED_NAME.matcher(new String(content, StandardCharsets.ISO_8859_1));
+                while (matcher.find()) {
+                    resourceNames.add(matcher.group().replace('.', '/'));
+                }
+            }
+        }
+    }
+
+    /** Lists the class path entries, followed by the <code>Class-Path</code> entries of each jar. */
+    private static List<File> getClassPathFiles(String classPath) {
+        List<File> files = new ArrayList<>();
+        Set<File> visited = new HashSet<>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                addClassPathFile(new File(entry).getAbsoluteFile(), files, visited);
+            }
+        }
+        return files;
+    }
+
+    private static void addClassPathFile(File file, List<File> files, Set<File> visited) {
+        if (!visited.add(file)) {
+            return;
+        }
+        if (!file.isFile()) {
+            files.add(file);
+            return;
+        }
+        List<String> manifestClassPath = new ArrayList<>();
+        boolean manifestOnly = false;
+        try (JarFile jar = new JarFile(file)) {
+            Manifest manifest = jar.getManifest();
+            String value = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (value != null) {
+                for (String entry : value.trim().split("\\s+")) {
+                    manifestClassPath.add(entry);
+                }
+                manifestOnly = jar.stream().allMatch(e -> e.getName().startsWith(MANIFEST_FOLDER));
+            }
+        } catch (IOException e) {
+            // not a jar, only its path, size and time count
+        }
+        if (!manifestOnly) {
+            files.add(file);
+        }
+        for (String entry : manifestClassPath) {
+            try {
+                addClassPathFile(new File(new URL(file.toURI().toURL(), entry).toURI()), files, visited);
+            } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+                // not a local file, the class loader skips it too
+            }
+        }
+    }
+
+    private static List<String> readUtf8Constants(byte[] bytes) {
+        List<String> constants = new ArrayList<>();
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < 10 || in.getInt() != 0xCAFEBABE) {
+            return constants;
+        }
+        in.position(8);
+        int poolCount = in.getShort() & 0xffff;
+        for (int i = 1; i < poolCount; i++) {
+            int tag = in.get() & 0xff;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    int length = in.getShort() & 0xffff;
+                    constants.add(new String(bytes, in.position(), length, StandardCharsets.UTF_8));
+                    in.position(in.position() + length);
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.position(in.position() + 2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    in.position(in.position() + 3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.position(in.position() + 4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    in.position(in.position() + 8);
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+        return constants;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Caches the tests which passed, keyed by the {@link TestFingerprint} of their class. A test class
+ * whose fingerprint is unchanged only runs the tests which didn't pass with that fingerprint, the
+ * others are reported as cached.
+ *
+ * <p>The cache folder holds one file per fingerprint, with one <code>class#method\tduration</code>
+ * line per passed test. Nothing is cached for a class when its class level setup or teardown fails.
+ */
+public class TestResultCache extends RunListener {
+    private final File folder;
+    private final TestFingerprint fingerprint;
+
+    private String currentFingerprint;
+    private Map<String, Long> passed = new LinkedHashMap<>();
+    private boolean classFailed;
+    private Description currentTest;
+    private long currentTestStart;
+    private boolean currentTestFailed;
+
+    private TestResultCache(File folder, TestFingerprint fingerprint) {
+        this.folder = folder;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Creates the cache configured by the runner options.
+     *
+     * @return the cache, or <code>null</code> when it is off, the tests run as benchmarks, or the class
+     *     path can't be read
+     */
+    public static TestResultCache create() {
+        if (!TestRunnerOptions.isCache() || TestRunnerOptions.getBenchmarkIterations() > 0) {
+            // a benchmark measures the tests, it never skips them
+            return null;
+        }
+        try {
+            return new TestResultCache(TestRunnerOptions.getCacheFolder(), TestFingerprint.create());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read the class path, the test results are not cached: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Called before a test class runs. Removes the tests which passed with the same fingerprint from
+     * its runner.
+     *
+     * @param reference the test class
+     * @return the removed tests with their cached durations, they don't run
+     */
+    public synchronized Map<Description, Long> classStarted(JUnit4TestReference reference) {
+        passed = new LinkedHashMap<>();
+        classFailed = false;
+        currentFingerprint = null;
+        Map<Description, Long> cached = new LinkedHashMap<>();
+        try {
+            currentFingerprint = fingerprint.of(reference.getDescription().getClassName());
+            passed = read(new File(folder, currentFingerprint));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to read the cached results of " + reference + ": " + e.getMessage());
+            return cached;
+        }
+
+        List<Description> tests = new ArrayList<>();
+        collectTests(reference.getDescription(), tests);
+        for (Description test : tests) {
+            Long duration = passed.get(getKey(test));
+            if (duration != null) {
+                cached.put(test, duration);
+            }
+        }
+        Runner runner = reference.getRunner();
+        if (cached.isEmpty() || cached.size() == tests.size()) {
+            return cached;
+        } else if (!(runner instanceof Filterable)) {
+            // the runner can't leave out the cached tests, they all run again
+            return new LinkedHashMap<>();
+        }
+        try {
+            ((Filterable) runner).filter(new CachedTestsFilter(cached));
+        } catch (NoTestsRemainException ignored) {
+        }
+        return cached;
+    }
+
+    /** Called when the test class has run, stores the tests which passed with its fingerprint. */
+    public synchronized void classFinished() {
+        if (currentFingerprint == null || classFailed) {
+            return;
+        }
+        try {
+            write(new File(folder, currentFingerprint), passed);
+        } catch (IOException e) {
+            System.err.println("Failed to write the test results to " + folder + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void testStarted(Description description) throws Exception {
+        currentTest = description;
+        currentTestStart = System.currentTimeMillis();
+        currentTestFailed = false;
+    }
+
+    @Override
+    public synchronized void testFinished(Description description) throws Exception {
+        if (description.equals(currentTest) && !currentTestFailed && description.getMethodName() != null) {
+            passed.put(getKey(description), System.currentTimeMillis() - currentTestStart);
+        }
+        currentTest = null;
+    }
+
+    @Override
+    public synchronized void testFailure(Failure failure) throws Exception {
+        failed(failure.getDescription());
+    }
+
+    @Override
+    public synchronized void testAssumptionFailure(Failure failure) {
+        failed(failure.getDescription());
+    }
+
+    private void failed(Description description) {
+        if (description.isTest() && description.getMethodName() != null) {
+            currentTestFailed = true;
+            passed.remove(getKey(description));
+        } else {
+            classFailed = true;
+        }
+    }
+
+    private static String getKey(Description test) {
+        return test.getClassName() + "#" + test.getMethodName();
+    }
+
+    private static void collectTests(Description description, List<Description> tests) {
+        if (description.isTest()) {
+            tests.add(description);
+        }
+        for (Description child : description.getChildren()) {
+            collectTests(child, tests);
+        }
+    }
+
+    private static Map<String, Long> read(File file) throws IOException {
+        Map<String, Long> results = new LinkedHashMap<>();
+        if (!file.isFile()) {
+            return results;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separatorIndex = line.lastIndexOf('\t');
+                if (separatorIndex == -1) {
+                    continue;
+                }
+                try {
+                    results.put(line.substring(0, separatorIndex), Long.valueOf(line.substring(separatorIndex + 1)));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void write(File file, Map<String, Long> results) throws IOException {
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Can't create " + folder);
+        }
+        File temp = new File(folder, file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : results.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(String.valueOf(entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Leaves out the cached tests. */
+    private static class CachedTestsFilter extends Filter {
+        private final Map<Description, Long> cached;
+
+        CachedTestsFilter(Map<Description, Long> cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public boolean shouldRun(Description description) {
+            if (description.isTest()) {
+                return !cached.containsKey(description);
+            }
+            for (Description child : description.getChildren()) {
+                if (shouldRun(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String describe() {
+            return "Not cached";
+        }
+    }
+}
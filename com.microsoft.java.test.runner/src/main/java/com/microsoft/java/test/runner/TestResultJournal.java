@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Persists the outcome of every test of the run in a result file, one <code>STATUS\ttest</code> line
+ * per test, where the test is <code>class#method</code>, or <code>class</code> for a failure of the
+ * whole class. The failed tests can then be run again with {@link #readFailedTests(File, boolean)}.
+ */
+public class TestResultJournal extends RunListener {
+    /** Outcome of a test. */
+    public enum Status {
+        PASSED,
+        FAILED,
+        ERROR,
+        SKIPPED,
+        IGNORED;
+
+        boolean isFailed() {
+            return this == FAILED || this == ERROR;
+        }
+    }
+
+    private final File file;
+    private final boolean merge;
+    private final Map<String, Status> results = new LinkedHashMap<>();
+
+    /**
+     * Creates a journal.
+     *
+     * @param file the result file
+     * @param merge whether to keep the results of the tests which don't run, when rerunning a part
+     *     of the previous run
+     */
+    public TestResultJournal(File file, boolean merge) {
+        this.file = file;
+        this.merge = merge;
+    }
+
+    /** Creates the journal configured by the runner options, or <code>null</code> when it is off. */
+    public static TestResultJournal create() {
+        File file = TestRunnerOptions.getJournal();
+        return file == null ? null : new TestResultJournal(file, TestRunnerOptions.isRerun());
+    }
+
+    @Override
+    public void testStarted(Description description) throws Exception {
+        record(description, Status.PASSED);
+    }
+
+    @Override
+    public void testFailure(Failure failure) throws Exception {
+        record(
+                failure.getDescription(),
+                failure.getException() instanceof AssertionError ? Status.FAILED : Status.ERROR);
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure) {
+        record(failure.getDescription(), Status.SKIPPED);
+    }
+
+    @Override
+    public void testIgnored(Description description) throws Exception {
+        record(description, Status.IGNORED);
+    }
+
+    @Override
+    public void testRunFinished(Result result) throws Exception {
+        try {
+            write();
+        } catch (IOException e) {
+            System.err.println("Failed to write the test results to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the tests which failed in the run persisted in the result file.
+     *
+     * @param file the result file
+     * @param wholeClasses whether to return the classes of the failed tests instead of the tests
+     * @return the failed tests as <code>class#method</code>, or the classes declaring them
+     * @throws IOException if the result file can't be read
+     */
+    public static List<String> readFailedTests(File file, boolean wholeClasses) throws IOException {
+        Set<String> tests = new LinkedHashSet<>();
+        for (Map.Entry<String, Status> entry : read(file).entrySet()) {
+            if (entry.getValue().isFailed()) {
+                String test = entry.getKey();
+                int separatorIndex = test.indexOf('#');
+                tests.add(wholeClasses && separatorIndex != -1 ? test.substring(0, separatorIndex) : test);
+            }
+        }
+        return new ArrayList<>(tests);
+    }
+
+    private synchronized void record(Description description, Status status) {
+        String test =
+                description.getMethodName() == null
+                        ? description.getClassName()
+                        : description.getClassName() + "#" + description.getMethodName();
+        results.put(test, status);
+    }
+
+    private synchronized void write() throws IOException {
+        Map<String, Status> journal = new LinkedHashMap<>();
+        if (merge && file.isFile()) {
+            journal.putAll(read(file));
+        }
+        journal.putAll(results);
+
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Can't create " + folder);
+        }
+        File temp = new File(folder, file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Status> entry : journal.entrySet()) {
+                writer.write(entry.getValue().name());
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Map<String, Status> read(File file) throws IOException {
+        Map<String, Status> journal = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separatorIndex = line.indexOf('\t');
+                if (separatorIndex == -1) {
+                    continue;
+                }
+                try {
+                    journal.put(
+                            line.substring(separatorIndex + 1),
+                            Status.valueOf(line.substring(0, separatorIndex)));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        }
+        return journal;
+    }
+}
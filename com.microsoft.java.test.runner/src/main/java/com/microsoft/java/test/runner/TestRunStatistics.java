@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Collects where the time of a test run went, for the summary printed when the run finishes. */
+public class TestRunStatistics {
+    private static final Comparator<Timing> BY_DURATION = Comparator.comparingLong(Timing::getDuration);
+
+    private final int top;
+    private final long runStart;
+    private final long gcCountAtStart;
+    private final long gcTimeAtStart;
+    private final long classesLoadedAtStart;
+    private final List<Timing> suites = new ArrayList<>();
+    private final PriorityQueue<Timing> slowestTests;
+    private final PriorityQueue<Timing> slowestSuites;
+    private long testTime;
+    private long runDuration;
+
+    public TestRunStatistics(int top) {
+        this.top = Math.max(top, 0);
+        this.slowestTests = new PriorityQueue<>(this.top + 1, BY_DURATION);
+        this.slowestSuites = new PriorityQueue<>(this.top + 1, BY_DURATION);
+        this.runStart = System.currentTimeMillis();
+        this.gcCountAtStart = getJvmGcCount();
+        this.gcTimeAtStart = getJvmGcTime();
+        this.classesLoadedAtStart = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+    }
+
+    /**
+     * Records an atomic test that has finished.
+     *
+     * @param name qualified name of the test
+     * @param duration time of test running
+     */
+    public void testFinished(String name, long duration) {
+        testTime += duration;
+        offer(slowestTests, new Timing(name, duration));
+    }
+
+    /**
+     * Records a test suite that has finished.
+     *
+     * @param name name of test suite
+     * @param duration wall time of the suite
+     */
+    public void suiteFinished(String name, long duration) {
+        Timing timing = new Timing(name, duration);
+        suites.add(timing);
+        offer(slowestSuites, timing);
+    }
+
+    /** Called when all tests have finished. */
+    public void runFinished() {
+        runDuration = System.currentTimeMillis() - runStart;
+    }
+
+    /** Returns the wall time of the run. */
+    public long getRunDuration() {
+        return runDuration;
+    }
+
+    /** Returns the time spent inside the tests themselves. */
+    public long getTestTime() {
+        return testTime;
+    }
+
+    /** Returns the time of the run not spent inside tests: runner, class fixtures and reporting. */
+    public long getOverhead() {
+        return Math.max(runDuration - testTime, 0);
+    }
+
+    /** Returns the wall time of every suite, in the order they ran. */
+    public List<Timing> getSuites() {
+        return suites;
+    }
+
+    /** Returns the slowest tests, slowest first. */
+    public List<Timing> getSlowestTests() {
+        return sorted(slowestTests);
+    }
+
+    /** Returns the slowest suites, slowest first. */
+    public List<Timing> getSlowestSuites() {
+        return sorted(slowestSuites);
+    }
+
+    /** Returns the number of garbage collections during the run. */
+    public long getGcCount() {
+        return getJvmGcCount() - gcCountAtStart;
+    }
+
+    /** Returns the accumulated garbage collection time during the run, in milliseconds. */
+    public long getGcTime() {
+        return getJvmGcTime() - gcTimeAtStart;
+    }
+
+    /** Returns the peak of the used heap, in bytes. */
+    public long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /** Returns the number of classes loaded during the run. */
+    public long getClassesLoaded() {
+        return ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() - classesLoadedAtStart;
+    }
+
+    /** Returns the number of classes loaded since the JVM started. */
+    public long getTotalClassesLoaded() {
+        return ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+    }
+
+    /** Returns the number of classes unloaded since the JVM started. */
+    public long getClassesUnloaded() {
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        return classLoading.getUnloadedClassCount();
+    }
+
+    private void offer(PriorityQueue<Timing> queue, Timing timing) {
+        if (top == 0) {
+            return;
+        }
+        queue.offer(timing);
+        if (queue.size() > top) {
+            queue.poll();
+        }
+    }
+
+    private static List<Timing> sorted(PriorityQueue<Timing> queue) {
+        List<Timing> timings = new ArrayList<>(queue);
+        Collections.sort(timings, BY_DURATION.reversed());
+        return timings;
+    }
+
+    private static long getJvmGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long getJvmGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    /** Duration of a named test or suite. */
+    public static class Timing {
+        private final String name;
+        private final long duration;
+
+        public Timing(String name, long duration) {
+            this.name = name;
+            this.duration = duration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+    }
+}
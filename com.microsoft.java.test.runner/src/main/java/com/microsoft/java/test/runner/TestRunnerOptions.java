@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.io.File;
+
+/** Options of the test runner, passed to the runner JVM as system properties. */
+public final class TestRunnerOptions {
+    /** Number of the slowest tests and classes listed in the summary of the run. */
+    public static final String SUMMARY_TOP = "java.test.runner.summary.top";
+
+    /** Whether to track the heap growth of every suite. */
+    public static final String HEAP_TRACKING = "java.test.runner.heap.tracking";
+
+    /** Whether to collect garbage before sampling the heap, on by default. */
+    public static final String HEAP_GC = "java.test.runner.heap.gc";
+
+    /** Deadline of a single test in milliseconds, no deadline when not positive. */
+    public static final String TEST_TIMEOUT = "java.test.runner.timeout.test";
+
+    /** Deadline of a whole test class in milliseconds, no deadline when not positive. */
+    public static final String CLASS_TIMEOUT = "java.test.runner.timeout.class";
+
+    /** What to do with a test past its deadline: report, interrupt or abandon. */
+    public static final String TIMEOUT_ACTION = "java.test.runner.timeout.action";
+
+    /**
+     * Result file persisting the outcome of every test of the last run, off when not set. It should
+     * be kept per workspace, as a rerun reads the failed tests from it.
+     */
+    public static final String JOURNAL = "java.test.runner.journal";
+
+    /**
+     * Reruns the failed tests of the last run instead of the given tests: <code>failed</code> runs
+     * the failed tests only, <code>failedClasses</code> runs the whole classes declaring them.
+     */
+    public static final String RERUN = "java.test.runner.rerun";
+
+    /**
+     * Channel the events of the run are sent to instead of the standard output:
+     * <code>tcp:[host:]port</code> or <code>unix:path</code>.
+     */
+    public static final String REPORT = "java.test.runner.report";
+
+    /**
+     * Reports the passed tests in batches of at most this many tests instead of one start and one
+     * finish message each, off when not positive. Failures, ignored tests and suites are still
+     * reported at once.
+     */
+    public static final String REPORT_BATCH = "java.test.runner.report.batch";
+
+    /** Longest time in milliseconds a passed test waits in a batch before it is reported. */
+    public static final String REPORT_BATCH_INTERVAL = "java.test.runner.report.batchInterval";
+
+    /**
+     * Builds the runner of every test class just before it runs and releases it afterwards, instead
+     * of building all of them up front. The test tree is then sent class by class.
+     */
+    public static final String LAZY_RUNNERS = "java.test.runner.lazy";
+
+    /** Map file of the classes every test executed, written when the coverage agent is attached. */
+    public static final String COVERAGE = "java.test.runner.coverage";
+
+    /**
+     * Duration in milliseconds from which a test is reported with a summary of stack samples taken
+     * while it ran, off when not positive.
+     */
+    public static final String PROFILE_THRESHOLD = "java.test.runner.profile.threshold";
+
+    /** Milliseconds between two stack samples of the running test. */
+    public static final String PROFILE_INTERVAL = "java.test.runner.profile.interval";
+
+    /**
+     * What to do with the threads a test class leaves running: <code>report</code> them, or
+     * <code>fail</code> the class as well. Not detected by default.
+     */
+    public static final String LEAKS = "java.test.runner.leaks";
+
+    /**
+     * Skips the tests which passed in an earlier run with the same bytecode, and reports them as
+     * cached.
+     */
+    public static final String CACHE = "java.test.runner.cache";
+
+    /** Folder of the cached test results. */
+    public static final String CACHE_FOLDER = "java.test.runner.cache.folder";
+
+    /**
+     * Runs every test method as a microbenchmark with this many measured iterations, and reports
+     * their timings in nanoseconds, off when not positive. Only applies to the default JUnit 4 runner.
+     */
+    public static final String BENCHMARK_ITERATIONS = "java.test.runner.benchmark.iterations";
+
+    /** Number of iterations run before the measured iterations of a benchmark. */
+    public static final String BENCHMARK_WARMUP = "java.test.runner.benchmark.warmup";
+
+    /**
+     * Folder the JUnit XML reports are written to, one <code>TEST-class.xml</code> file per test
+     * class, off when not set.
+     */
+    public static final String XML_REPORTS = "java.test.runner.xml";
+
+    private static final String RERUN_FAILED_CLASSES = "failedClasses";
+
+    private TestRunnerOptions() {}
+
+    public static int getSummaryTop() {
+        return Integer.getInteger(SUMMARY_TOP, 10);
+    }
+
+    public static boolean isHeapTracking() {
+        return Boolean.getBoolean(HEAP_TRACKING);
+    }
+
+    public static boolean isHeapGc() {
+        return !"false".equalsIgnoreCase(System.getProperty(HEAP_GC));
+    }
+
+    public static long getTestTimeout() {
+        return Long.getLong(TEST_TIMEOUT, 0);
+    }
+
+    public static long getClassTimeout() {
+        return Long.getLong(CLASS_TIMEOUT, 0);
+    }
+
+    public static File getJournal() {
+        String journal = System.getProperty(JOURNAL);
+        return journal == null || journal.isEmpty() ? null : new File(journal);
+    }
+
+    public static File getCoverage() {
+        String coverage = System.getProperty(COVERAGE);
+        if (coverage == null || coverage.isEmpty()) {
+            return new File(System.getProperty("java.io.tmpdir"), "java-test-runner" + File.separator + "coverage.txt");
+        }
+        return new File(coverage);
+    }
+
+    public static boolean isCache() {
+        return Boolean.getBoolean(CACHE);
+    }
+
+    public static File getCacheFolder() {
+        String folder = System.getProperty(CACHE_FOLDER);
+        if (folder == null || folder.isEmpty()) {
+            return new File(System.getProperty("java.io.tmpdir"), "java-test-runner" + File.separator + "cache");
+        }
+        return new File(folder);
+    }
+
+    public static int getBenchmarkIterations() {
+        return Integer.getInteger(BENCHMARK_ITERATIONS, 0);
+    }
+
+    public static int getBenchmarkWarmup() {
+        return Math.max(0, Integer.getInteger(BENCHMARK_WARMUP, 10));
+    }
+
+    public static File getXmlReports() {
+        String folder = System.getProperty(XML_REPORTS);
+        return folder == null || folder.isEmpty() ? null : new File(folder);
+    }
+
+    public static boolean isRerun() {
+        String rerun = System.getProperty(RERUN);
+        return rerun != null && !rerun.isEmpty() && !"false".equalsIgnoreCase(rerun);
+    }
+
+    public static boolean isRerunClasses() {
+        return RERUN_FAILED_CLASSES.equalsIgnoreCase(System.getProperty(RERUN));
+    }
+
+    public static String getReport() {
+        return System.getProperty(REPORT);
+    }
+
+    public static int getReportBatch() {
+        return Integer.getInteger(REPORT_BATCH, 0);
+    }
+
+    public static long getReportBatchInterval() {
+        return Long.getLong(REPORT_BATCH_INTERVAL, 1000);
+    }
+
+    public static boolean isLazyRunners() {
+        return Boolean.getBoolean(LAZY_RUNNERS);
+    }
+
+    public static long getProfileThreshold() {
+        return Long.getLong(PROFILE_THRESHOLD, 0);
+    }
+
+    public static long getProfileInterval() {
+        return Math.max(1, Long.getLong(PROFILE_INTERVAL, 50));
+    }
+
+    public static ThreadLeakDetector.Mode getLeakMode() {
+        String mode = System.getProperty(LEAKS);
+        if (mode == null) {
+            return ThreadLeakDetector.Mode.OFF;
+        }
+        try {
+            return ThreadLeakDetector.Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ThreadLeakDetector.Mode.OFF;
+        }
+    }
+
+    public static TestWatchdog.Action getTimeoutAction() {
+        String action = System.getProperty(TIMEOUT_ACTION);
+        if (action == null) {
+            return TestWatchdog.Action.REPORT;
+        }
+        try {
+            return TestWatchdog.Action.valueOf(action.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return TestWatchdog.Action.REPORT;
+        }
+    }
+}
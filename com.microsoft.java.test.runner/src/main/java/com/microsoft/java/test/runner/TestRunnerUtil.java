@@ -11,76 +11,187 @@
 package com.microsoft.java.test.runner;
 
 import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.junit.runner.Description;
 import org.junit.runner.Request;
+import org.junit.runner.RunWith;
 import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.InitializationError;
 
 /** Utility class for building test executing request. */
 public class TestRunnerUtil {
     /**
      * Build list of {@clink JUnit4TestReference}.
      *
-     * @param suites array of test classes or test method (if args.length == 1) to execute
+     * @param suites array of test classes or test methods (as <code>class#method</code>) to execute
      * @return list of {@link JUnit4TestReference}
      */
     public static List<JUnit4TestReference> createTestReferences(String[] suites) {
-        if (suites.length == 0) {
+        List<JUnit4TestReference> references = new LinkedList<>();
+        for (Map.Entry<String, Set<String>> entry : groupByClass(suites).entrySet()) {
+            try {
+                references.add(createTestReference(loadClass(entry.getKey()), entry.getValue()));
+            } catch (ClassNotFoundException ignored) {
+            }
+        }
+        if (references.isEmpty()) {
+            System.err.print("No test found to run.");
             return emptyList();
-        } else if (suites.length == 1) {
-            String suite = suites[0];
-            int separatorIndex = suite.indexOf('#');
-            return separatorIndex == -1
-                    ? getRequestForClass(suite)
-                    : getRequestForOneMethod(suite, separatorIndex);
         }
-
-        return getRequestForClasses(suites);
+        return references;
     }
 
-    private static List<JUnit4TestReference> getRequestForOneMethod(
-            String suite, int separatorIndex) {
-        try {
-            Class suiteClass = Class.forName(suite.substring(0, separatorIndex));
-            String method = suite.substring(separatorIndex + 1);
-            Request request = Request.method(suiteClass, method);
-            Runner runner = request.getRunner();
-            return singletonList(new JUnit4TestReference(runner, runner.getDescription()));
-        } catch (ClassNotFoundException e) {
+    /**
+     * Build {@link JUnit4TestReference}s one at a time. Only the test classes are loaded up front, the
+     * runner and the {@link Description} tree of a class are built when the iteration reaches it, so
+     * they can be released once the class has run.
+     *
+     * @param suites array of test classes or test methods (as <code>class#method</code>) to execute
+     * @return the {@link JUnit4TestReference}s to run, empty when no test class is found
+     */
+    public static Iterable<JUnit4TestReference> createLazyTestReferences(String[] suites) {
+        final List<Class<?>> testClasses = new ArrayList<>();
+        final List<Set<String>> testMethods = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : groupByClass(suites).entrySet()) {
+            try {
+                testClasses.add(loadClass(entry.getKey()));
+                testMethods.add(entry.getValue());
+            } catch (ClassNotFoundException ignored) {
+            }
+        }
+        if (testClasses.isEmpty()) {
             System.err.print("No test found to run.");
             return emptyList();
         }
+        return () -> new Iterator<JUnit4TestReference>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < testClasses.size();
+            }
+
+            @Override
+            public JUnit4TestReference next() {
+                JUnit4TestReference reference = createTestReference(testClasses.get(next), testMethods.get(next));
+                next++;
+                return reference;
+            }
+        };
     }
 
-    private static List<JUnit4TestReference> getRequestForClass(String suite) {
-        try {
-            Request request = Request.aClass(Class.forName(suite));
-            Runner runner = request.getRunner();
-            return singletonList(new JUnit4TestReference(runner, runner.getDescription()));
-        } catch (ClassNotFoundException e) {
-            System.err.print("No test found to run.");
-            return emptyList();
+    /**
+     * Reports every test of a description which was not reported yet as started, failed and finished,
+     * so the client shows the error on each test rather than dropping a failure of the whole class.
+     *
+     * @param notifier notifier of the run
+     * @param description a test class or a test
+     * @param error the error the tests fail with
+     * @param reported the tests already reported, they are left out
+     */
+    public static void failTests(
+            RunNotifier notifier, Description description, Throwable error, Set<Description> reported) {
+        if (description.isTest()) {
+            if (!reported.contains(description)) {
+                notifier.fireTestStarted(description);
+                notifier.fireTestFailure(new Failure(description, error));
+                notifier.fireTestFinished(description);
+            }
+            return;
+        }
+        for (Description child : description.getChildren()) {
+            failTests(notifier, child, error, reported);
         }
     }
 
-    private static List<JUnit4TestReference> getRequestForClasses(String[] args) {
-        List<JUnit4TestReference> suites = new LinkedList<>();
-        for (String classFqn : args) {
+    /**
+     * Loads a test class without initializing it, its static initializers run when the class starts
+     * and are timed as part of its setup.
+     */
+    private static Class<?> loadClass(String className) throws ClassNotFoundException {
+        return Class.forName(className, false, TestRunnerUtil.class.getClassLoader());
+    }
+
+    private static Map<String, Set<String>> groupByClass(String[] suites) {
+        // methods of the same class run under one runner, an empty set selects the whole class
+        Map<String, Set<String>> classes = new LinkedHashMap<>();
+        for (String suite : suites) {
+            int separatorIndex = suite.indexOf('#');
+            String className = separatorIndex == -1 ? suite : suite.substring(0, separatorIndex);
+            Set<String> methods = classes.get(className);
+            if (separatorIndex == -1) {
+                classes.put(className, new LinkedHashSet<>());
+            } else if (methods == null) {
+                methods = new LinkedHashSet<>();
+                methods.add(suite.substring(separatorIndex + 1));
+                classes.put(className, methods);
+            } else if (!methods.isEmpty()) {
+                methods.add(suite.substring(separatorIndex + 1));
+            }
+        }
+        return classes;
+    }
+
+    private static JUnit4TestReference createTestReference(Class<?> suiteClass, Set<String> methods) {
+        Runner runner = createRequest(suiteClass, methods).getRunner();
+        return new JUnit4TestReference(runner, runner.getDescription());
+    }
+
+    private static Request createRequest(Class<?> suiteClass, Set<String> methods) {
+        int iterations = TestRunnerOptions.getBenchmarkIterations();
+        if (iterations > 0 && suiteClass.getAnnotation(RunWith.class) == null) {
             try {
-                Class<?> aClass = Class.forName(classFqn);
-                Request request = Request.aClass(aClass);
-                Runner runner = request.getRunner();
-                suites.add(new JUnit4TestReference(runner, runner.getDescription()));
-            } catch (ClassNotFoundException ignored) {
+                Request request = Request.runner(
+                        new BenchmarkRunner(suiteClass, TestRunnerOptions.getBenchmarkWarmup(), iterations));
+                return methods.isEmpty() ? request : request.filterWith(new MethodsFilter(methods));
+            } catch (InitializationError ignored) {
+                // the default runner reports the errors of the class
             }
         }
-        if (suites.isEmpty()) {
-            System.err.print("No test found to run.");
-            return emptyList();
+        if (methods.isEmpty()) {
+            return Request.aClass(suiteClass);
+        } else if (methods.size() == 1) {
+            return Request.method(suiteClass, methods.iterator().next());
+        }
+        return Request.aClass(suiteClass).filterWith(new MethodsFilter(methods));
+    }
+
+    /** Runs the given methods of a test class. */
+    private static class MethodsFilter extends Filter {
+        private final Set<String> methods;
+
+        MethodsFilter(Set<String> methods) {
+            this.methods = methods;
+        }
+
+        @Override
+        public boolean shouldRun(Description description) {
+            if (description.isTest()) {
+                return methods.contains(description.getMethodName());
+            }
+            for (Description child : description.getChildren()) {
+                if (shouldRun(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String describe() {
+            return "Methods " + methods;
         }
-        return suites;
     }
 }
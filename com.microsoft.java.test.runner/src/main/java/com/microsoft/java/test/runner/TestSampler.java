@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples the stack of the running test at a low rate, and summarizes where the time of the tests
+ * slower than a threshold went: the frames the most samples were taken in, and the hottest call
+ * paths leading to them. The samples of faster tests are discarded.
+ */
+public class TestSampler implements Runnable {
+    private static final int MAX_STACK_DEPTH = 12;
+    private static final String[] FRAMEWORK_PACKAGES = {
+        "org.junit.", "junit.", "sun.reflect.", "jdk.internal.reflect.", "java.lang.reflect.",
+        "com.microsoft.java.test.runner."
+    };
+
+    private final long threshold;
+    private final long interval;
+    private final int top;
+
+    private Thread testThread;
+    private int samples;
+    private final Map<String, Integer> leafFrames = new HashMap<>();
+    private final Map<String, Integer> stacks = new HashMap<>();
+    private Thread samplerThread;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param threshold duration in milliseconds from which the samples of a test are reported
+     * @param interval milliseconds between two samples
+     * @param top number of frames and call paths reported
+     */
+    public TestSampler(long threshold, long interval, int top) {
+        this.threshold = threshold;
+        this.interval = interval;
+        this.top = top;
+    }
+
+    /** Creates the sampler configured by the runner options, or <code>null</code> when it is off. */
+    public static TestSampler create() {
+        long threshold = TestRunnerOptions.getProfileThreshold();
+        if (threshold <= 0) {
+            return null;
+        }
+        return new TestSampler(threshold, TestRunnerOptions.getProfileInterval(), TestRunnerOptions.getSummaryTop());
+    }
+
+    /** Starts sampling the current thread, which is about to run a test. */
+    public synchronized void testStarted() {
+        testThread = Thread.currentThread();
+        samples = 0;
+        leafFrames.clear();
+        stacks.clear();
+        if (samplerThread == null) {
+            samplerThread = new Thread(this, "Test Sampler");
+            samplerThread.setDaemon(true);
+            samplerThread.start();
+        }
+    }
+
+    /**
+     * Stops sampling the test.
+     *
+     * @param duration time of test running
+     * @return the summary of the samples, or <code>null</code> when the test was faster than the
+     *     threshold
+     */
+    public synchronized Profile testFinished(long duration) {
+        testThread = null;
+        if (duration < threshold || samples == 0) {
+            return null;
+        }
+        return new Profile(samples, interval, hottest(leafFrames), hottest(stacks));
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            sample();
+        }
+    }
+
+    private synchronized void sample() {
+        if (testThread == null) {
+            return;
+        }
+        StackTraceElement[] frames = ThreadDumpUtil.getStackTrace(testThread);
+        if (frames.length == 0) {
+            return;
+        }
+        samples++;
+        leafFrames.merge(frames[0].toString(), 1, Integer::sum);
+
+        // folded from the caller to the callee, without the frames of JUnit and the runner
+        List<String> path = new ArrayList<>(MAX_STACK_DEPTH);
+        for (int i = 0; i < frames.length && path.size() < MAX_STACK_DEPTH; i++) {
+            if (!isFramework(frames[i])) {
+                path.add(0, frames[i].getClassName() + "." + frames[i].getMethodName());
+            }
+        }
+        if (!path.isEmpty()) {
+            stacks.merge(String.join(";", path), 1, Integer::sum);
+        }
+    }
+
+    private List<Sample> hottest(Map<String, Integer> counts) {
+        List<Sample> hottest = new ArrayList<>(counts.size());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            hottest.add(new Sample(entry.getKey(), entry.getValue()));
+        }
+        hottest.sort((a, b) -> Integer.compare(b.count, a.count));
+        return hottest.size() > top ? new ArrayList<>(hottest.subList(0, top)) : hottest;
+    }
+
+    private static boolean isFramework(StackTraceElement frame) {
+        for (String framework : FRAMEWORK_PACKAGES) {
+            if (frame.getClassName().startsWith(framework)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The summary of the samples taken during a slow test. */
+    public static class Profile {
+        private final int samples;
+        private final long interval;
+        private final List<Sample> hotFrames;
+        private final List<Sample> hotStacks;
+
+        Profile(int samples, long interval, List<Sample> hotFrames, List<Sample> hotStacks) {
+            this.samples = samples;
+            this.interval = interval;
+            this.hotFrames = hotFrames;
+            this.hotStacks = hotStacks;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        /** Returns the frames on top of the stack in the most samples, hottest first. */
+        public List<Sample> getHotFrames() {
+            return hotFrames;
+        }
+
+        /** Returns the most sampled call paths, as methods from caller to callee separated by ';'. */
+        public List<Sample> getHotStacks() {
+            return hotStacks;
+        }
+    }
+
+    /** A frame or a call path, and the number of samples it was seen in. */
+    public static class Sample {
+        private final String name;
+        private final int count;
+
+        Sample(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
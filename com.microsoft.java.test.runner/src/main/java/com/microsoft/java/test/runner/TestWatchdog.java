@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import com.microsoft.java.test.runner.listeners.CustomizedJUnitTestListener;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+/**
+ * Watches the running tests and test classes. When a test or a class runs past its deadline, a dump
+ * of all threads is reported and, depending on the {@link Action}, the test is interrupted or the
+ * rest of its class is abandoned so the run can go on with the next class.
+ */
+public class TestWatchdog extends RunListener implements Runnable {
+    /** What to do with a test that runs past its deadline, besides reporting it. */
+    public enum Action {
+        /** Only report the thread dump, let the test run on. */
+        REPORT,
+        /** Interrupt the thread running the test. */
+        INTERRUPT,
+        /** Fail the running test and the tests of its class which didn't run, and abandon the class. */
+        ABANDON
+    }
+
+    private final CustomizedJUnitTestListener listener;
+    private final long testTimeout;
+    private final long classTimeout;
+    private final Action action;
+    private final Map<Description, RunningTest> runningTests = new ConcurrentHashMap<>();
+
+    private volatile ClassRun currentClass;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    public TestWatchdog(CustomizedJUnitTestListener listener, long testTimeout, long classTimeout, Action action) {
+        this.listener = listener;
+        this.testTimeout = testTimeout;
+        this.classTimeout = classTimeout;
+        this.action = action;
+    }
+
+    /**
+     * Creates a watchdog configured by the runner options.
+     *
+     * @param listener listener reporting the timeouts
+     * @return the watchdog, or <code>null</code> when no timeout is configured
+     */
+    public static TestWatchdog create(CustomizedJUnitTestListener listener) {
+        long testTimeout = TestRunnerOptions.getTestTimeout();
+        long classTimeout = TestRunnerOptions.getClassTimeout();
+        if (testTimeout <= 0 && classTimeout <= 0) {
+            return null;
+        }
+        return new TestWatchdog(listener, testTimeout, classTimeout, TestRunnerOptions.getTimeoutAction());
+    }
+
+    /** Starts watching in a daemon thread. */
+    public void start() {
+        thread = new Thread(this, "Test Watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops watching. */
+    public void stop() {
+        stopped = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Runs the tests of a test class under the class deadline. When the rest of a class can be
+     * abandoned, the class runs in its own thread so the caller can go on once it is abandoned.
+     *
+     * @param reference the test class to run
+     * @param runNotifier will be notified of events while tests are being run
+     */
+    public void run(JUnit4TestReference reference, RunNotifier runNotifier) {
+        ClassRun classRun = new ClassRun(reference.getDescription());
+        currentClass = classRun;
+        try {
+            if (action != Action.ABANDON) {
+                classRun.thread = Thread.currentThread();
+                reference.run(runNotifier);
+                return;
+            }
+
+            RunNotifier classNotifier = new RunNotifier();
+            classNotifier.addListener(new AbandonableListener(runNotifier, classRun));
+            Thread worker =
+                    new Thread(
+                            () -> {
+                                try {
+                                    reference.run(classNotifier);
+                                } finally {
+                                    classRun.finished.countDown();
+                                }
+                            },
+                            "Test Runner - " + reference.getDescription().getDisplayName());
+            worker.setDaemon(true);
+            classRun.thread = worker;
+            worker.start();
+            awaitUninterruptibly(classRun.finished);
+
+            if (classRun.abandoned) {
+                Set<Description> reported = new HashSet<>(classRun.reported);
+                for (RunningTest test : getRunningTests(classRun)) {
+                    reported.add(test.description);
+                    runNotifier.fireTestFailure(new Failure(test.description, abandoned(test)));
+                    runNotifier.fireTestFinished(test.description);
+                }
+                TestRunnerUtil.failTests(
+                        runNotifier, reference.getRunner().getDescription(), notRun(classRun), reported);
+            }
+        } finally {
+            currentClass = null;
+        }
+    }
+
+    @Override
+    public void testStarted(Description description) throws Exception {
+        runningTests.put(description, new RunningTest(description, Thread.currentThread(), currentClass));
+    }
+
+    @Override
+    public void testFinished(Description description) throws Exception {
+        runningTests.remove(description);
+    }
+
+    @Override
+    public void run() {
+        long interval = getCheckInterval();
+        while (!stopped) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            check(System.currentTimeMillis());
+        }
+    }
+
+    private void check(long now) {
+        if (testTimeout > 0) {
+            for (RunningTest test : runningTests.values()) {
+                long elapsed = now - test.start;
+                if (!test.timedOut && elapsed > testTimeout) {
+                    test.timedOut = true;
+                    timedOut(test.description, elapsed, testTimeout, test.thread, test.classRun);
+                }
+            }
+        }
+        ClassRun classRun = currentClass;
+        if (classTimeout > 0 && classRun != null) {
+            long elapsed = now - classRun.start;
+            if (!classRun.timedOut && elapsed > classTimeout) {
+                classRun.timedOut = true;
+                timedOut(classRun.description, elapsed, classTimeout, classRun.thread, classRun);
+            }
+        }
+    }
+
+    private void timedOut(Description description, long elapsed, long timeout, Thread thread, ClassRun classRun) {
+        listener.testTimedOut(description, elapsed, timeout, action, ThreadDumpUtil.dumpAllThreads());
+        switch (action) {
+            case INTERRUPT:
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                break;
+            case ABANDON:
+                if (classRun != null) {
+                    // once set, the class reports nothing more, see AbandonableListener
+                    synchronized (classRun) {
+                        classRun.abandoned = true;
+                    }
+                    classRun.finished.countDown();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private List<RunningTest> getRunningTests(ClassRun classRun) {
+        List<RunningTest> tests = new ArrayList<>();
+        for (RunningTest test : runningTests.values()) {
+            if (test.classRun == classRun) {
+                tests.add(test);
+            }
+        }
+        return tests;
+    }
+
+    private long getCheckInterval() {
+        long timeout = Long.MAX_VALUE;
+        if (testTimeout > 0) {
+            timeout = testTimeout;
+        }
+        if (classTimeout > 0) {
+            timeout = Math.min(timeout, classTimeout);
+        }
+        return Math.max(10, Math.min(timeout / 10, 1000));
+    }
+
+    private static TimeoutException abandoned(RunningTest test) {
+        TimeoutException exception =
+                new TimeoutException(
+                        String.format(
+                                "Test timed out after %d ms and was abandoned",
+                                System.currentTimeMillis() - test.start));
+        exception.setStackTrace(ThreadDumpUtil.getStackTrace(test.thread));
+        return exception;
+    }
+
+    private static TimeoutException notRun(ClassRun classRun) {
+        TimeoutException exception =
+                new TimeoutException(
+                        String.format(
+                                "Test not run, its class timed out after %d ms and was abandoned",
+                                System.currentTimeMillis() - classRun.start));
+        exception.setStackTrace(new StackTraceElement[0]);
+        return exception;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ClassRun {
+        final Description description;
+        final long start = System.currentTimeMillis();
+        final CountDownLatch finished = new CountDownLatch(1);
+        /** Tests which finished or were ignored before the class was abandoned. */
+        final Set<Description> reported = ConcurrentHashMap.newKeySet();
+        volatile Thread thread;
+        volatile boolean timedOut;
+        volatile boolean abandoned;
+
+        ClassRun(Description description) {
+            this.description = description;
+        }
+    }
+
+    private static class RunningTest {
+        final Description description;
+        final Thread thread;
+        final ClassRun classRun;
+        final long start = System.currentTimeMillis();
+        volatile boolean timedOut;
+
+        RunningTest(Description description, Thread thread, ClassRun classRun) {
+            this.description = description;
+            this.thread = thread;
+            this.classRun = classRun;
+        }
+    }
+
+    /**
+     * Forwards the events of a class to the run, until the class is abandoned. An event is forwarded
+     * and recorded under the lock of the class, so the tests reported when it is abandoned are known.
+     */
+    private static class AbandonableListener extends RunListener {
+        private final RunNotifier runNotifier;
+        private final ClassRun classRun;
+
+        AbandonableListener(RunNotifier runNotifier, ClassRun classRun) {
+            this.runNotifier = runNotifier;
+            this.classRun = classRun;
+        }
+
+        @Override
+        public void testStarted(Description description) throws Exception {
+            synchronized (classRun) {
+                if (!classRun.abandoned) {
+                    runNotifier.fireTestStarted(description);
+                }
+            }
+        }
+
+        @Override
+        public void testFinished(Description description) throws Exception {
+            synchronized (classRun) {
+                if (!classRun.abandoned) {
+                    classRun.reported.add(description);
+                    runNotifier.fireTestFinished(description);
+                }
+            }
+        }
+
+        @Override
+        public void testFailure(Failure failure) throws Exception {
+            synchronized (classRun) {
+                if (!classRun.abandoned) {
+                    runNotifier.fireTestFailure(failure);
+                }
+            }
+        }
+
+        @Override
+        public void testAssumptionFailure(Failure failure) {
+            synchronized (classRun) {
+                if (!classRun.abandoned) {
+                    runNotifier.fireTestAssumptionFailed(failure);
+                }
+            }
+        }
+
+        @Override
+        public void testIgnored(Description description) throws Exception {
+            synchronized (classRun) {
+                if (!classRun.abandoned) {
+                    classRun.reported.add(description);
+                    runNotifier.fireTestIgnored(description);
+                }
+            }
+        }
+    }
+}
@@ -39,6 +39,51 @@ public class TestingMessageHelper {
     private static final String MESSAGE = "message";
     private static final String DETAILS = "details";
     private static final String TEST_FAILED = "testFailed";
+    private static final String TEST_RUN_SUMMARY = "testRunSummary";
+    private static final String TEST_TIME = "testTime";
+    private static final String OVERHEAD = "overhead";
+    private static final String GC_COUNT = "gcCount";
+    private static final String GC_TIME = "gcTime";
+    private static final String PEAK_HEAP = "peakHeap";
+    private static final String CLASSES_LOADED = "classesLoaded";
+    private static final String TOTAL_CLASSES_LOADED = "totalClassesLoaded";
+    private static final String CLASSES_UNLOADED = "classesUnloaded";
+    private static final String SUITES = "suites";
+    private static final String SLOWEST_TESTS = "slowestTests";
+    private static final String SLOWEST_SUITES = "slowestSuites";
+    private static final String HEAP_GROWTH = "heapGrowth";
+    private static final String GROWTH = "growth";
+    private static final String WORST_OFFENDERS = "worstOffenders";
+    private static final String TEST_TIMED_OUT = "testTimedOut";
+    private static final String TIMEOUT = "timeout";
+    private static final String ACTION = "action";
+    private static final String TESTS_PASSED = "testsPassed";
+    private static final String TESTS = "tests";
+    private static final String TEST_CACHED = "testCached";
+    private static final String STARTUP_TIMING = "startupTiming";
+    private static final String PHASES = "phases";
+    private static final String PROFILE = "profile";
+    private static final String SAMPLES = "samples";
+    private static final String INTERVAL = "interval";
+    private static final String HOT_FRAMES = "hotFrames";
+    private static final String HOT_STACKS = "hotStacks";
+    private static final String THREAD_LEAK = "threadLeak";
+    private static final String THREADS = "threads";
+    private static final String STATE = "state";
+    private static final String DAEMON = "daemon";
+    private static final String STACK = "stack";
+    private static final String BENCHMARK = "benchmark";
+    private static final String WARMUP = "warmup";
+    private static final String ITERATIONS = "iterations";
+    private static final String MIN = "min";
+    private static final String MEAN = "mean";
+    private static final String P50 = "p50";
+    private static final String P99 = "p99";
+    private static final String MAX = "max";
+    private static final String SETUP = "setup";
+    private static final String STATIC_INIT = "staticInit";
+    private static final String TEARDOWN = "teardown";
+    private static final int LEAK_STACK_FRAMES = 5;
 
     /**
      * Prints a message when the test reported was attached.
@@ -84,20 +129,154 @@ public class TestingMessageHelper {
     }
 
     /**
-     * Prints an information when an atomic test has finished.
+     * Prints an information when an atomic test has finished, with the summary of the stack samples
+     * taken while it ran and the timings of its benchmark iterations.
      *
      * @param description information about test method
      * @param out output stream
      * @param duration time of test running
+     * @param profile the summary of the samples, or <code>null</code>
+     * @param benchmark the timings of the measured iterations, or <code>null</code>
      */
-    public static void testFinished(PrintStream out, Description description, long duration) {
+    public static void testFinished(
+            PrintStream out,
+            Description description,
+            long duration,
+            TestSampler.Profile profile,
+            BenchmarkRunner.Statistics benchmark) {
+        List<Pair> attributes = new ArrayList<>();
+        attributes.add(new Pair(NAME, escape(description.getMethodName())));
+        attributes.add(new Pair(DURATION, String.valueOf(duration)));
+        if (profile != null) {
+            attributes.add(
+                    Pair.raw(
+                            PROFILE,
+                            "{" + new Pair(SAMPLES, String.valueOf(profile.getSamples())) + ", "
+                                    + new Pair(INTERVAL, String.valueOf(profile.getInterval())) + ", "
+                                    + Pair.raw(HOT_FRAMES, toJsonSamples(profile.getHotFrames())) + ", "
+                                    + Pair.raw(HOT_STACKS, toJsonSamples(profile.getHotStacks())) + "}"));
+        }
+        if (benchmark != null) {
+            attributes.add(
+                    Pair.raw(
+                            BENCHMARK,
+                            "{" + new Pair(WARMUP, String.valueOf(benchmark.getWarmup())) + ", "
+                                    + new Pair(ITERATIONS, String.valueOf(benchmark.getIterations())) + ", "
+                                    + new Pair(MIN, String.valueOf(benchmark.getMin())) + ", "
+                                    + new Pair(MEAN, String.valueOf(benchmark.getMean())) + ", "
+                                    + new Pair(P50, String.valueOf(benchmark.getP50())) + ", "
+                                    + new Pair(P99, String.valueOf(benchmark.getP99())) + ", "
+                                    + new Pair(MAX, String.valueOf(benchmark.getMax())) + "}"));
+        }
+        out.println(create(TEST_FINISHED, attributes));
+    }
+
+    /**
+     * Prints an information about a batch of atomic tests which have passed, in place of their start
+     * and finish messages.
+     *
+     * @param out output stream
+     * @param tests method names and durations of the tests
+     */
+    public static void testsPassed(PrintStream out, List<TestRunStatistics.Timing> tests) {
+        out.println(create(TESTS_PASSED, Pair.raw(TESTS, toJson(tests))));
+    }
+
+    /**
+     * Prints an information about an atomic test which is not run, as it passed in an earlier run
+     * with the same bytecode.
+     *
+     * @param out output stream
+     * @param description information about test method
+     * @param duration time of the test in the run which passed
+     */
+    public static void testCached(PrintStream out, Description description, long duration) {
+        String location = description.getClassName() + "." + description.getMethodName();
         out.println(
                 create(
-                        TEST_FINISHED,
+                        TEST_CACHED,
                         new Pair(NAME, escape(description.getMethodName())),
+                        new Pair(LOCATION, "java:test://" + escape(location)),
                         new Pair(DURATION, String.valueOf(duration))));
     }
 
+    /**
+     * Prints an information when a test or a test class runs past its deadline.
+     *
+     * @param out output stream
+     * @param description information about the test, or the test class for a class deadline
+     * @param duration time the test has been running
+     * @param timeout the deadline that passed
+     * @param action what is done with the test
+     * @param threadDump dump of all threads when the deadline passed
+     */
+    public static void testTimedOut(
+            PrintStream out,
+            Description description,
+            long duration,
+            long timeout,
+            TestWatchdog.Action action,
+            String threadDump) {
+        String name =
+                description.getMethodName() != null
+                        ? description.getMethodName()
+                        : description.getClassName();
+        String location =
+                description.getMethodName() != null
+                        ? description.getClassName() + "." + description.getMethodName()
+                        : description.getClassName();
+        out.println(
+                create(
+                        TEST_TIMED_OUT,
+                        new Pair(NAME, escape(name)),
+                        new Pair(LOCATION, "java:test://" + escape(location)),
+                        new Pair(DURATION, String.valueOf(duration)),
+                        new Pair(TIMEOUT, String.valueOf(timeout)),
+                        new Pair(ACTION, action.name().toLowerCase()),
+                        new Pair(MESSAGE, escape(String.format("Test timed out after %d ms", duration))),
+                        new Pair(DETAILS, escape(threadDump))));
+    }
+
+    /**
+     * Prints a warning when a test class left threads running.
+     *
+     * @param out output stream
+     * @param description information about the test class
+     * @param threads the threads started by the class and still alive
+     */
+    public static void threadLeak(PrintStream out, Description description, List<Thread> threads) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (Thread thread : threads) {
+            StringBuilder stack = new StringBuilder();
+            StackTraceElement[] frames = ThreadDumpUtil.getStackTrace(thread);
+            for (int i = 0; i < frames.length && i < LEAK_STACK_FRAMES; i++) {
+                stack.append("\tat ").append(frames[i]).append('\n');
+            }
+            joiner.add(
+                    "{" + new Pair(NAME, escape(thread.getName())) + ", "
+                            + new Pair(STATE, thread.getState().name()) + ", "
+                            + new Pair(DAEMON, String.valueOf(thread.isDaemon())) + ", "
+                            + new Pair(STACK, escape(stack.toString())) + "}");
+        }
+        out.println(
+                create(
+                        THREAD_LEAK,
+                        new Pair(NAME, escape(description.getClassName())),
+                        new Pair(LOCATION, "java:test://" + escape(description.getClassName())),
+                        new Pair(MESSAGE, escape(getLeakMessage(threads.size()))),
+                        Pair.raw(THREADS, joiner.toString())));
+    }
+
+    /**
+     * Returns the message of a class which left threads running.
+     *
+     * @param count number of threads left running
+     * @return the message
+     */
+    public static String getLeakMessage(int count) {
+        return String.format("%d thread%s left running by the test class", count, count == 1 ? "" : "s");
+    }
+
     /**
      * Prints an information when an test node has added.
      *
@@ -114,27 +293,44 @@ public class TestingMessageHelper {
     }
 
     /**
-     * Prints an information when running of test suite started.
+     * Prints an information when running of test suite finished, with the time of its class level
+     * teardown.
      *
      * @param currentSuite name of test suite
      * @param out output stream
+     * @param duration wall time of the suite
+     * @param teardown time from the last test to the end of the class, not printed when negative
      */
-    public static void testSuiteFinished(PrintStream out, String currentSuite) {
-        out.println(create(TEST_SUITE_FINISHED, new Pair(NAME, escape(currentSuite))));
+    public static void testSuiteFinished(PrintStream out, String currentSuite, long duration, long teardown) {
+        List<Pair> attributes = new ArrayList<>();
+        attributes.add(new Pair(NAME, escape(currentSuite)));
+        attributes.add(new Pair(DURATION, String.valueOf(duration)));
+        if (teardown >= 0) {
+            attributes.add(new Pair(TEARDOWN, String.valueOf(teardown)));
+        }
+        out.println(create(TEST_SUITE_FINISHED, attributes));
     }
 
     /**
-     * Prints an information when running of test suite started.
+     * Prints an information when running of test suite started, with the time of its class level
+     * setup.
      *
      * @param description information about suite
      * @param out output stream
+     * @param setup time from the start of the class to its first test, not printed when negative
+     * @param staticInit part of the setup spent in the static initializers, not printed when negative
      */
-    public static void testSuiteStarted(PrintStream out, Description description) {
-        out.println(
-                create(
-                        TEST_SUITE_STARTED,
-                        new Pair(NAME, escape(description.getClassName())),
-                        new Pair(LOCATION, "java:test://" + escape(description.getClassName()))));
+    public static void testSuiteStarted(PrintStream out, Description description, long setup, long staticInit) {
+        List<Pair> attributes = new ArrayList<>();
+        attributes.add(new Pair(NAME, escape(description.getClassName())));
+        attributes.add(new Pair(LOCATION, "java:test://" + escape(description.getClassName())));
+        if (setup >= 0) {
+            attributes.add(new Pair(SETUP, String.valueOf(setup)));
+        }
+        if (staticInit >= 0) {
+            attributes.add(new Pair(STATIC_INIT, String.valueOf(staticInit)));
+        }
+        out.println(create(TEST_SUITE_STARTED, attributes));
     }
 
     /**
@@ -192,6 +388,62 @@ public class TestingMessageHelper {
         out.println(create(TEST_FAILED, attributes));
     }
 
+    /**
+     * Prints where the time of the test run went: suite and slowest test durations, time spent in
+     * the runner, garbage collection, heap and class loading.
+     *
+     * @param out output stream
+     * @param statistics the statistics collected during the run
+     */
+    public static void testRunSummary(PrintStream out, TestRunStatistics statistics) {
+        out.println(
+                create(
+                        TEST_RUN_SUMMARY,
+                        new Pair(DURATION, String.valueOf(statistics.getRunDuration())),
+                        new Pair(TEST_TIME, String.valueOf(statistics.getTestTime())),
+                        new Pair(OVERHEAD, String.valueOf(statistics.getOverhead())),
+                        new Pair(GC_COUNT, String.valueOf(statistics.getGcCount())),
+                        new Pair(GC_TIME, String.valueOf(statistics.getGcTime())),
+                        new Pair(PEAK_HEAP, String.valueOf(statistics.getPeakHeap())),
+                        new Pair(CLASSES_LOADED, String.valueOf(statistics.getClassesLoaded())),
+                        new Pair(TOTAL_CLASSES_LOADED, String.valueOf(statistics.getTotalClassesLoaded())),
+                        new Pair(CLASSES_UNLOADED, String.valueOf(statistics.getClassesUnloaded())),
+                        Pair.raw(SUITES, toJson(statistics.getSuites())),
+                        Pair.raw(SLOWEST_TESTS, toJson(statistics.getSlowestTests())),
+                        Pair.raw(SLOWEST_SUITES, toJson(statistics.getSlowestSuites()))));
+    }
+
+    /**
+     * Prints where the time between the start of the JVM and the start of the first test went.
+     *
+     * @param out output stream
+     * @param duration time from the start of the JVM to the start of the first test
+     * @param phases the startup phases in order, with their durations
+     */
+    public static void startupTiming(PrintStream out, long duration, List<TestRunStatistics.Timing> phases) {
+        out.println(
+                create(
+                        STARTUP_TIMING,
+                        new Pair(DURATION, String.valueOf(duration)),
+                        Pair.raw(PHASES, toJson(phases))));
+    }
+
+    /**
+     * Prints the suites whose run left the largest growth of the retained heap behind.
+     *
+     * @param out output stream
+     * @param worstOffenders the suites with the largest heap growth, largest first
+     */
+    public static void heapGrowth(PrintStream out, List<HeapGrowthTracker.HeapGrowth> worstOffenders) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (HeapGrowthTracker.HeapGrowth offender : worstOffenders) {
+            joiner.add(
+                    "{" + new Pair(NAME, escape(offender.getName())) + ", "
+                            + new Pair(GROWTH, String.valueOf(offender.getGrowth())) + "}");
+        }
+        out.println(create(HEAP_GROWTH, Pair.raw(WORST_OFFENDERS, joiner.toString())));
+    }
+
     /**
      * Prints an information about result of the test running.
      *
@@ -219,7 +471,7 @@ public class TestingMessageHelper {
             builder.append(", \"attributes\":{");
             StringJoiner joiner = new StringJoiner(", ");
             for (Pair attribute : attributes) {
-                joiner.add("\"" + attribute.first + "\":\"" + attribute.second + "\"");
+                joiner.add(attribute.toString());
             }
             builder.append(joiner.toString());
             builder.append("}");
@@ -229,6 +481,26 @@ public class TestingMessageHelper {
         return builder.toString();
     }
     
+    private static String toJson(List<TestRunStatistics.Timing> timings) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (TestRunStatistics.Timing timing : timings) {
+            joiner.add(
+                    "{" + new Pair(NAME, escape(timing.getName())) + ", "
+                            + new Pair(DURATION, String.valueOf(timing.getDuration())) + "}");
+        }
+        return joiner.toString();
+    }
+
+    private static String toJsonSamples(List<TestSampler.Sample> samples) {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (TestSampler.Sample sample : samples) {
+            joiner.add(
+                    "{" + new Pair(NAME, escape(sample.getName())) + ", "
+                            + new Pair(SAMPLES, String.valueOf(sample.getCount())) + "}");
+        }
+        return joiner.toString();
+    }
+
     private static String escape(String str) {
     	if (str == null) {
     		return str;
@@ -274,10 +546,28 @@ public class TestingMessageHelper {
     private static class Pair {
         final String first;
         final String second;
+        final boolean raw;
 
         Pair(String first, String second) {
+            this(first, second, false);
+        }
+
+        private Pair(String first, String second, boolean raw) {
             this.first = first;
             this.second = second;
+            this.raw = raw;
+        }
+
+        /** Creates an attribute whose value is already a JSON array or object. */
+        static Pair raw(String first, String json) {
+            return new Pair(first, json, true);
+        }
+
+        @Override
+        public String toString() {
+            return raw
+                    ? "\"" + first + "\":" + second
+                    : "\"" + first + "\":\"" + second + "\"";
         }
     }
 }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+/** Utility class for capturing thread dumps in a jstack like format. */
+public final class ThreadDumpUtil {
+    private ThreadDumpUtil() {}
+
+    /** Returns the stacks, held locks and deadlocks of all live threads. */
+    public static String dumpAllThreads() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] threads =
+                threadBean.dumpAllThreads(
+                        threadBean.isObjectMonitorUsageSupported(),
+                        threadBean.isSynchronizerUsageSupported());
+        StringBuilder builder = new StringBuilder();
+        for (ThreadInfo thread : threads) {
+            format(builder, thread, Integer.MAX_VALUE);
+            builder.append('\n');
+        }
+        long[] deadlocked = threadBean.findDeadlockedThreads();
+        if (deadlocked != null) {
+            builder.append("Found ").append(deadlocked.length).append(" deadlocked threads:\n");
+            for (ThreadInfo thread : threadBean.getThreadInfo(deadlocked)) {
+                if (thread != null) {
+                    builder.append("\t\"").append(thread.getThreadName()).append("\" Id=")
+                            .append(thread.getThreadId()).append('\n');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats one thread of a dump.
+     *
+     * @param thread the thread to format
+     * @param maxFrames the maximum number of stack frames to print
+     * @return the formatted thread
+     */
+    public static String format(ThreadInfo thread, int maxFrames) {
+        StringBuilder builder = new StringBuilder();
+        format(builder, thread, maxFrames);
+        return builder.toString();
+    }
+
+    private static void format(StringBuilder builder, ThreadInfo thread, int maxFrames) {
+        builder.append('"').append(thread.getThreadName()).append("\" Id=").append(thread.getThreadId())
+                .append(' ').append(thread.getThreadState());
+        if (thread.getLockInfo() != null) {
+            builder.append(" on ").append(toString(thread.getLockInfo()));
+        }
+        if (thread.getLockOwnerName() != null) {
+            builder.append(" owned by \"").append(thread.getLockOwnerName()).append("\" Id=")
+                    .append(thread.getLockOwnerId());
+        }
+        builder.append('\n');
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        int frames = Math.min(stackTrace.length, maxFrames);
+        for (int i = 0; i < frames; i++) {
+            builder.append("\tat ").append(withoutModule(stackTrace[i])).append('\n');
+            if (i == 0 && thread.getLockInfo() != null) {
+                switch (thread.getThreadState()) {
+                    case BLOCKED:
+                        builder.append("\t- blocked on ");
+                        break;
+                    case WAITING:
+                    case TIMED_WAITING:
+                        builder.append("\t- waiting on ");
+                        break;
+                    default:
+                        builder.append("\t- on ");
+                }
+                builder.append(toString(thread.getLockInfo())).append('\n');
+            }
+            for (MonitorInfo monitor : thread.getLockedMonitors()) {
+                if (monitor.getLockedStackDepth() == i) {
+                    builder.append("\t- locked ").append(toString(monitor)).append('\n');
+                }
+            }
+        }
+        if (frames < stackTrace.length) {
+            builder.append("\t...\n");
+        }
+        LockInfo[] synchronizers = thread.getLockedSynchronizers();
+        if (synchronizers.length > 0) {
+            builder.append("\n\tNumber of locked synchronizers = ").append(synchronizers.length).append('\n');
+            for (LockInfo synchronizer : synchronizers) {
+                builder.append("\t- ").append(toString(synchronizer)).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns the current stack of a thread, without the module names and versions Java 9 and later
+     * print, as they contain an '@' which the client's parser doesn't allow.
+     *
+     * @param thread the thread whose stack is returned
+     * @return the stack frames of the thread
+     */
+    public static StackTraceElement[] getStackTrace(Thread thread) {
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        for (int i = 0; i < stackTrace.length; i++) {
+            stackTrace[i] = withoutModule(stackTrace[i]);
+        }
+        return stackTrace;
+    }
+
+    private static StackTraceElement withoutModule(StackTraceElement frame) {
+        return new StackTraceElement(
+                frame.getClassName(), frame.getMethodName(), frame.getFileName(), frame.getLineNumber());
+    }
+
+    /** Formats a lock without the '@' of {@link LockInfo#toString()}, which the client's parser doesn't allow. */
+    private static String toString(LockInfo lock) {
+        return String.format("<0x%08x> (a %s)", lock.getIdentityHashCode(), lock.getClassName());
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the threads a test class started and left running, e.g. executors which were never shut down.
+ * The live threads are compared before and after every class, and the new threads are given a short
+ * grace period to stop on their own.
+ */
+public class ThreadLeakDetector {
+    /** What to do with a class which leaks threads. */
+    public enum Mode {
+        /** Leaks are not detected. */
+        OFF,
+        /** The leaked threads are reported. */
+        REPORT,
+        /** The leaked threads are reported, and the class fails. */
+        FAIL
+    }
+
+    private static final long GRACE_PERIOD = 100;
+    private static final String[] RUNNER_THREADS = {
+        "Test Watchdog", "Test Runner - ", "Test Sampler", "Test report flusher"
+    };
+    /** Threads the JVM starts lazily and shares between all classes, they belong to no test class. */
+    private static final String[] JVM_THREADS = {
+        "ForkJoinPool.commonPool-worker-", "process reaper", "Attach Listener", "Common-Cleaner",
+        "Keep-Alive-Timer", "Keep-Alive-SocketCleaner", "Java2D Disposer", "AWT-", "RMI ", "JMX "
+    };
+
+    private final boolean strict;
+    private Set<Thread> baseline = Collections.emptySet();
+
+    public ThreadLeakDetector(boolean strict) {
+        this.strict = strict;
+    }
+
+    /** Creates the detector configured by the runner options, or <code>null</code> when it is off. */
+    public static ThreadLeakDetector create() {
+        Mode mode = TestRunnerOptions.getLeakMode();
+        return mode == Mode.OFF ? null : new ThreadLeakDetector(mode == Mode.FAIL);
+    }
+
+    /** Whether a class which leaks threads fails. */
+    public boolean isStrict() {
+        return strict;
+    }
+
+    /** Called before the test class runs, remembers the live threads. */
+    public void classStarted() {
+        baseline = getLiveThreads();
+    }
+
+    /**
+     * Called when the test class has run.
+     *
+     * @return the threads started since the class started and still alive after the grace period
+     */
+    public List<Thread> classFinished() {
+        List<Thread> leaked = new ArrayList<>();
+        for (Thread thread : getLiveThreads()) {
+            if (!baseline.contains(thread) && !isRunnerThread(thread) && !isJvmThread(thread)) {
+                leaked.add(thread);
+            }
+        }
+        long deadline = System.currentTimeMillis() + GRACE_PERIOD;
+        for (Thread thread : leaked) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                thread.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        leaked.removeIf(thread -> !thread.isAlive());
+        // the next class is only blamed for its own threads
+        baseline = getLiveThreads();
+        return leaked;
+    }
+
+    private static Set<Thread> getLiveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count;
+        while ((count = root.enumerate(threads, true)) == threads.length) {
+            threads = new Thread[threads.length * 2];
+        }
+        Set<Thread> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        live.addAll(Arrays.asList(threads).subList(0, count));
+        return live;
+    }
+
+    private static boolean isRunnerThread(Thread thread) {
+        return startsWithAny(thread.getName(), RUNNER_THREADS);
+    }
+
+    private static boolean isJvmThread(Thread thread) {
+        return startsWithAny(thread.getName(), JVM_THREADS);
+    }
+
+    private static boolean startsWithAny(String name, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.coverage;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+
+/**
+ * Java agent recording which classes every test executes, enabled with
+ * <code>-javaagent:com.microsoft.java.test.runner.jar[=package,package...]</code>. Only the classes
+ * of the given packages are instrumented, or all the classes outside of the JDK, JUnit and the
+ * runner when no package is given.
+ */
+public final class CoverageAgent implements ClassFileTransformer {
+    private static final String[] EXCLUDED_PACKAGES = {
+        "java/", "javax/", "jdk/", "sun/", "com/sun/", "org/junit/", "junit/", "org/hamcrest/",
+        "com/microsoft/java/test/runner/"
+    };
+
+    private final String[] includedPackages;
+
+    private CoverageAgent(String[] includedPackages) {
+        this.includedPackages = includedPackages;
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        String[] includedPackages = null;
+        if (args != null && !args.trim().isEmpty()) {
+            includedPackages = args.trim().split("\\s*,\\s*");
+            for (int i = 0; i < includedPackages.length; i++) {
+                includedPackages[i] = includedPackages[i].replace('.', '/') + "/";
+            }
+        }
+        instrumentation.addTransformer(new CoverageAgent(includedPackages));
+        CoverageProbe.install();
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (loader == null || className == null || classBeingRedefined != null || !isIncluded(className)) {
+            return null;
+        }
+        try {
+            return ProbeInserter.instrument(classfileBuffer, className);
+        } catch (RuntimeException e) {
+            // leave the classes we cannot parse as they are
+            return null;
+        }
+    }
+
+    private boolean isIncluded(String className) {
+        if (includedPackages != null) {
+            for (String included : includedPackages) {
+                if (className.startsWith(included)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (String excluded : EXCLUDED_PACKAGES) {
+            if (className.startsWith(excluded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
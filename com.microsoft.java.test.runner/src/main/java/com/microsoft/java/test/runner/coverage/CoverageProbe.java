@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.coverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Target of the probes the {@link CoverageAgent} inserts at the start of every method. A probe marks
+ * the class of the method as executed, the marks are collected and cleared by the runner around
+ * every test.
+ */
+public final class CoverageProbe {
+    /** Most classes probed, the classes loaded past it are not instrumented. */
+    static final int MAX_CLASSES = 1 << 16;
+
+    private static final boolean[] hits = new boolean[MAX_CLASSES];
+    private static final String[] classNames = new String[MAX_CLASSES];
+    private static int classCount;
+    private static volatile boolean installed;
+
+    private CoverageProbe() {}
+
+    /**
+     * Called by the probes, kept as small as possible so it is inlined.
+     *
+     * @param classId id of the class the executed method belongs to
+     */
+    public static void hit(int classId) {
+        hits[classId] = true;
+    }
+
+    /** Whether the coverage agent was started in this JVM. */
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    static void install() {
+        installed = true;
+    }
+
+    /**
+     * Assigns an id to a class about to be instrumented.
+     *
+     * @param className internal name of the class
+     * @return the id of the class, or <code>-1</code> when there are too many classes
+     */
+    static synchronized int register(String className) {
+        if (classCount == MAX_CLASSES) {
+            return -1;
+        }
+        classNames[classCount] = className.replace('/', '.');
+        return classCount++;
+    }
+
+    /**
+     * Returns the classes executed since the last call, and clears their marks.
+     *
+     * @return the binary names of the classes
+     */
+    public static List<String> collect() {
+        int count;
+        synchronized (CoverageProbe.class) {
+            count = classCount;
+        }
+        List<String> classes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (hits[i]) {
+                hits[i] = false;
+                classes.add(classNames[i]);
+            }
+        }
+        return classes;
+    }
+
+    /** Clears the marks of all classes. */
+    public static void reset() {
+        Arrays.fill(hits, false);
+    }
+}
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.coverage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Inserts a call to {@link CoverageProbe#hit(int)} at the start of every method of a class. The
+ * probe is padded to a multiple of four bytes, so every following instruction moves by the same
+ * distance, relative jumps and switch paddings stay valid, and only the absolute offsets of the
+ * exception, line, local variable and stack map tables need to move.
+ */
+final class ProbeInserter {
+    private static final String PROBE_CLASS = "com/microsoft/java/test/runner/coverage/CoverageProbe";
+    private static final String PROBE_METHOD = "hit";
+    private static final String PROBE_DESCRIPTOR = "(I)V";
+    private static final int PROBE_CONSTANTS = 7;
+    private static final int PROBE_LENGTH = 8;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final int LDC_W = 0x13;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int NOP = 0x00;
+
+    private static final int SAME_FRAME_MAX = 63;
+    private static final int SAME_LOCALS_1_STACK_ITEM = 64;
+    private static final int SAME_LOCALS_1_STACK_ITEM_MAX = 127;
+    private static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+    private static final int SAME_FRAME_EXTENDED = 251;
+
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAX_CONSTANTS = 65535;
+
+    private final ByteBuffer in;
+    private final DataOutputStream out;
+    private String[] utf8;
+    private int probeMethodRef;
+    private int probeClassId;
+
+    private ProbeInserter(byte[] classFile, ByteArrayOutputStream buffer) {
+        this.in = ByteBuffer.wrap(classFile);
+        this.out = new DataOutputStream(buffer);
+    }
+
+    /**
+     * Instruments a class.
+     *
+     * @param classFile content of the class file
+     * @param className internal name of the class
+     * @return the instrumented class file, or <code>null</code> to leave the class as it is
+     */
+    static byte[] instrument(byte[] classFile, String className) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(classFile.length + 256);
+        try {
+            return new ProbeInserter(classFile, buffer).instrument(className) ? buffer.toByteArray() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean instrument(String className) throws IOException {
+        if (in.getInt() != 0xCAFEBABE) {
+            return false;
+        }
+        in.position(8);
+        int poolCount = u2();
+        if (poolCount + PROBE_CONSTANTS > MAX_CONSTANTS) {
+            return false;
+        }
+        readConstantPool(poolCount);
+        int classId = CoverageProbe.register(className);
+        if (classId == -1) {
+            return false;
+        }
+
+        out.write(in.array(), 0, 8);
+        out.writeShort(poolCount + PROBE_CONSTANTS);
+        out.write(in.array(), 10, in.position() - 10);
+        writeProbeConstants(poolCount, classId);
+
+        copy(6); // access flags, this and super class
+        int interfaceCount = u2();
+        out.writeShort(interfaceCount);
+        copy(2 * interfaceCount);
+        int fieldCount = u2();
+        out.writeShort(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            copy(6);
+            copyAttributes();
+        }
+        int methodCount = u2();
+        out.writeShort(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            copy(6);
+            int attributeCount = u2();
+            out.writeShort(attributeCount);
+            for (int j = 0; j < attributeCount; j++) {
+                int name = u2();
+                int length = in.getInt();
+                if ("Code".equals(utf8[name])) {
+                    writeCode(name, length);
+                } else {
+                    out.writeShort(name);
+                    out.writeInt(length);
+                    copy(length);
+                }
+            }
+        }
+        copy(in.remaining());
+        return true;
+    }
+
+    private void readConstantPool(int poolCount) {
+        utf8 = new String[poolCount];
+        for (int i = 1; i < poolCount; i++) {
+            int tag = in.get() & 0xff;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    int length = u2();
+                    utf8[i] = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+                    skip(length);
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skip(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skip(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    skip(8);
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void writeProbeConstants(int first, int classId) throws IOException {
+        out.writeByte(CONSTANT_UTF8);
+        out.writeUTF(PROBE_CLASS);
+        out.writeByte(CONSTANT_CLASS);
+        out.writeShort(first);
+        out.writeByte(CONSTANT_UTF8);
+        out.writeUTF(PROBE_METHOD);
+        out.writeByte(CONSTANT_UTF8);
+        out.writeUTF(PROBE_DESCRIPTOR);
+        out.writeByte(CONSTANT_NAME_AND_TYPE);
+        out.writeShort(first + 2);
+        out.writeShort(first + 3);
+        out.writeByte(CONSTANT_METHODREF);
+        out.writeShort(first + 1);
+        out.writeShort(first + 4);
+        out.writeByte(CONSTANT_INTEGER);
+        out.writeInt(classId);
+        probeMethodRef = first + 5;
+        probeClassId = first + 6;
+    }
+
+    private void writeCode(int name, int length) throws IOException {
+        int start = in.position();
+        int maxStack = u2();
+        int maxLocals = u2();
+        int codeLength = in.getInt();
+        if (codeLength + PROBE_LENGTH > MAX_CODE_LENGTH) {
+            in.position(start);
+            out.writeShort(name);
+            out.writeInt(length);
+            copy(length);
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(length + PROBE_LENGTH + 16);
+        DataOutputStream code = new DataOutputStream(buffer);
+        code.writeShort(Math.max(maxStack, 1));
+        code.writeShort(maxLocals);
+        code.writeInt(codeLength + PROBE_LENGTH);
+        code.writeByte(LDC_W);
+        code.writeShort(probeClassId);
+        code.writeByte(INVOKESTATIC);
+        code.writeShort(probeMethodRef);
+        code.writeByte(NOP);
+        code.writeByte(NOP);
+        code.write(in.array(), in.position(), codeLength);
+        skip(codeLength);
+
+        int exceptionCount = u2();
+        code.writeShort(exceptionCount);
+        for (int i = 0; i < exceptionCount; i++) {
+            code.writeShort(u2() + PROBE_LENGTH);
+            code.writeShort(u2() + PROBE_LENGTH);
+            code.writeShort(u2() + PROBE_LENGTH);
+            code.writeShort(u2());
+        }
+
+        int attributeCount = u2();
+        ByteArrayOutputStream attributes = new ByteArrayOutputStream();
+        DataOutputStream attribute = new DataOutputStream(attributes);
+        int keptCount = 0;
+        for (int i = 0; i < attributeCount; i++) {
+            int attributeName = u2();
+            int attributeLength = in.getInt();
+            int end = in.position() + attributeLength;
+            String attributeType = utf8[attributeName];
+            if ("RuntimeVisibleTypeAnnotations".equals(attributeType)
+                    || "RuntimeInvisibleTypeAnnotations".equals(attributeType)) {
+                // their offsets into the code are not worth rewriting, the annotations are dropped
+                in.position(end);
+                continue;
+            }
+            keptCount++;
+            attribute.writeShort(attributeName);
+            if ("LineNumberTable".equals(attributeType)) {
+                attribute.writeInt(attributeLength);
+                int count = u2();
+                attribute.writeShort(count);
+                for (int j = 0; j < count; j++) {
+                    attribute.writeShort(u2() + PROBE_LENGTH);
+                    attribute.writeShort(u2());
+                }
+            } else if ("LocalVariableTable".equals(attributeType)
+                    || "LocalVariableTypeTable".equals(attributeType)) {
+                attribute.writeInt(attributeLength);
+                int count = u2();
+                attribute.writeShort(count);
+                for (int j = 0; j < count; j++) {
+                    attribute.writeShort(u2() + PROBE_LENGTH);
+                    attribute.write(in.array(), in.position(), 8);
+                    skip(8);
+                }
+            } else if ("StackMapTable".equals(attributeType)) {
+                writeStackMapTable(attribute, attributeLength, end);
+            } else {
+                attribute.writeInt(attributeLength);
+                attribute.write(in.array(), in.position(), attributeLength);
+            }
+            in.position(end);
+        }
+        code.writeShort(keptCount);
+        attributes.writeTo(code);
+
+        out.writeShort(name);
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    /**
+     * Moves the first frame of a stack map table, the following frames are relative to it. A compact
+     * frame whose offset no longer fits in its type is widened to its extended form.
+     */
+    private void writeStackMapTable(DataOutputStream attribute, int length, int end) throws IOException {
+        int count = u2();
+        if (count == 0) {
+            attribute.writeInt(length);
+            attribute.writeShort(count);
+            return;
+        }
+        int type = in.get() & 0xff;
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(8);
+        DataOutputStream header = new DataOutputStream(frame);
+        if (type <= SAME_FRAME_MAX) {
+            int offset = type + PROBE_LENGTH;
+            if (offset <= SAME_FRAME_MAX) {
+                header.writeByte(offset);
+            } else {
+                header.writeByte(SAME_FRAME_EXTENDED);
+                header.writeShort(offset);
+            }
+        } else if (type <= SAME_LOCALS_1_STACK_ITEM_MAX) {
+            int offset = type - SAME_LOCALS_1_STACK_ITEM + PROBE_LENGTH;
+            if (offset <= SAME_FRAME_MAX) {
+                header.writeByte(SAME_LOCALS_1_STACK_ITEM + offset);
+            } else {
+                header.writeByte(SAME_LOCALS_1_STACK_ITEM_EXTENDED);
+                header.writeShort(offset);
+            }
+        } else if (type >= SAME_LOCALS_1_STACK_ITEM_EXTENDED) {
+            header.writeByte(type);
+            header.writeShort(u2() + PROBE_LENGTH);
+        } else {
+            throw new IllegalArgumentException("Unknown stack map frame type " + type);
+        }
+        int rest = end - in.position();
+        attribute.writeInt(2 + frame.size() + rest);
+        attribute.writeShort(count);
+        frame.writeTo(attribute);
+        attribute.write(in.array(), in.position(), rest);
+    }
+
+    private void copyAttributes() throws IOException {
+        int attributeCount = u2();
+        out.writeShort(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            copy(2);
+            int length = in.getInt();
+            out.writeInt(length);
+            copy(length);
+        }
+    }
+
+    private void copy(int length) throws IOException {
+        out.write(in.array(), in.position(), length);
+        skip(length);
+    }
+
+    private void skip(int length) {
+        in.position(in.position() + length);
+    }
+
+    private int u2() {
+        return in.getShort() & 0xffff;
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.coverage;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.runner.Description;
+
+/**
+ * Maps every test to the classes it executed, from the probes of the {@link CoverageAgent}. The code
+ * running outside of the tests, e.g. the class level setup and teardown, is attributed to the test
+ * classes on both sides of it, so a selection based on the map never misses a test.
+ *
+ * <p>The map is written as one line per test: the test, a tab, and the executed classes separated by
+ * commas. Class level code is recorded under the name of the test class.
+ */
+public class TestCoverageRecorder {
+    private final File file;
+    private final Map<String, Set<String>> coverage = new LinkedHashMap<>();
+    private String lastClass;
+
+    private TestCoverageRecorder(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates a recorder when the coverage agent runs in this JVM.
+     *
+     * @param file file the map is written to
+     * @return the recorder, or <code>null</code> without the agent
+     */
+    public static TestCoverageRecorder create(File file) {
+        if (!CoverageProbe.isInstalled()) {
+            return null;
+        }
+        CoverageProbe.reset();
+        return new TestCoverageRecorder(file);
+    }
+
+    /**
+     * Called when an atomic test is about to be started.
+     *
+     * @param description the description of the test
+     */
+    public synchronized void testStarted(Description description) {
+        List<String> outside = CoverageProbe.collect();
+        if (!outside.isEmpty()) {
+            if (lastClass != null) {
+                add(lastClass, outside);
+            }
+            add(description.getClassName(), outside);
+        }
+        lastClass = description.getClassName();
+    }
+
+    /**
+     * Called when an atomic test has finished, whether the test succeeds or fails.
+     *
+     * @param description the description of the test
+     */
+    public synchronized void testFinished(Description description) {
+        add(description.getClassName() + "#" + description.getMethodName(), CoverageProbe.collect());
+    }
+
+    /** Called when all tests have finished, writes the map. */
+    public synchronized void runFinished() {
+        List<String> outside = CoverageProbe.collect();
+        if (!outside.isEmpty() && lastClass != null) {
+            add(lastClass, outside);
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            System.err.println("Failed to write the test coverage to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void add(String test, List<String> classes) {
+        Set<String> executed = coverage.get(test);
+        if (executed == null) {
+            executed = new LinkedHashSet<>();
+            coverage.put(test, executed);
+        }
+        executed.addAll(classes);
+    }
+
+    private void write() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Set<String>> entry : coverage.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(String.join(",", entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
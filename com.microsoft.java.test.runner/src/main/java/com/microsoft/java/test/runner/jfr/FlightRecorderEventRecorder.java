@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.jfr;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+/** Emits the test lifecycle as custom Flight Recorder events. Only loaded on JVMs with JFR. */
+class FlightRecorderEventRecorder extends TestEventRecorder {
+    private static final String CATEGORY = "Java Test Runner";
+    private static final String PASSED = "passed";
+    private static final String FAILED = "failed";
+
+    private final Map<String, TestSuiteEvent> suites = new ConcurrentHashMap<>();
+    private final Map<Description, TestEvent> tests = new ConcurrentHashMap<>();
+
+    private volatile TestRunEvent run;
+    private volatile ClassSetupEvent classSetup;
+
+    @Override
+    public void runStarted() {
+        TestRunEvent event = new TestRunEvent();
+        event.begin();
+        run = event;
+    }
+
+    @Override
+    public void runFinished(Result result) {
+        TestRunEvent event = run;
+        if (event == null) {
+            return;
+        }
+        run = null;
+        event.end();
+        event.runCount = result.getRunCount();
+        event.failureCount = result.getFailureCount();
+        event.ignoreCount = result.getIgnoreCount();
+        event.commit();
+    }
+
+    @Override
+    public void suiteStarted(String suite) {
+        TestSuiteEvent event = new TestSuiteEvent();
+        event.suite = suite;
+        event.begin();
+        suites.put(suite, event);
+    }
+
+    @Override
+    public void suiteFinished(String suite) {
+        TestSuiteEvent event = suites.remove(suite);
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    @Override
+    public void classStarted(Description description) {
+        ClassSetupEvent event = new ClassSetupEvent();
+        event.className = description.getClassName();
+        event.begin();
+        classSetup = event;
+    }
+
+    @Override
+    public void classFinished(Description description) {
+        endClassSetup();
+    }
+
+    @Override
+    public void testStarted(Description description) {
+        endClassSetup();
+        TestEvent event = new TestEvent();
+        event.className = description.getClassName();
+        event.methodName = description.getMethodName();
+        event.status = PASSED;
+        event.begin();
+        tests.put(description, event);
+    }
+
+    @Override
+    public void testFailure(Failure failure) {
+        TestEvent event = tests.get(failure.getDescription());
+        if (event != null) {
+            event.status = FAILED;
+        }
+    }
+
+    @Override
+    public void testFinished(Description description) {
+        TestEvent event = tests.remove(description);
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    /** The class setup ends with the first test of the class, or with the class if no test ran. */
+    private void endClassSetup() {
+        ClassSetupEvent event = classSetup;
+        if (event != null) {
+            classSetup = null;
+            event.commit();
+        }
+    }
+
+    @Name("com.microsoft.java.test.TestRun")
+    @Label("Test Run")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class TestRunEvent extends Event {
+        @Label("Tests Run")
+        int runCount;
+
+        @Label("Failures")
+        int failureCount;
+
+        @Label("Ignored")
+        int ignoreCount;
+    }
+
+    @Name("com.microsoft.java.test.TestSuite")
+    @Label("Test Suite")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class TestSuiteEvent extends Event {
+        @Label("Suite")
+        String suite;
+    }
+
+    @Name("com.microsoft.java.test.ClassSetup")
+    @Label("Test Class Setup")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class ClassSetupEvent extends Event {
+        @Label("Class")
+        String className;
+    }
+
+    @Name("com.microsoft.java.test.Test")
+    @Label("Test")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class TestEvent extends Event {
+        @Label("Class")
+        String className;
+
+        @Label("Method")
+        String methodName;
+
+        @Label("Status")
+        String status;
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.jfr;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+/**
+ * Marks the boundaries of the test run in a Flight Recorder recording. This base implementation does
+ * nothing, {@link #create()} returns the JFR backed recorder when the running JVM supports it.
+ */
+public class TestEventRecorder {
+    public static final TestEventRecorder NO_OP = new TestEventRecorder();
+
+    private static final String FLIGHT_RECORDER = "jdk.jfr.FlightRecorder";
+    private static final String FLIGHT_RECORDER_EVENT_RECORDER =
+            "com.microsoft.java.test.runner.jfr.FlightRecorderEventRecorder";
+
+    /**
+     * Creates a recorder for the current JVM. The JFR backed recorder is loaded reflectively, so
+     * the JFR classes are never linked on JVMs without Flight Recorder, e.g. Java 8.
+     */
+    public static TestEventRecorder create() {
+        try {
+            Class<?> flightRecorder = Class.forName(FLIGHT_RECORDER);
+            if ((Boolean) flightRecorder.getMethod("isAvailable").invoke(null)) {
+                return (TestEventRecorder) Class.forName(FLIGHT_RECORDER_EVENT_RECORDER)
+                        .getDeclaredConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException | LinkageError ignored) {
+        }
+        return NO_OP;
+    }
+
+    /** Called before any tests have been run. */
+    public void runStarted() {}
+
+    /**
+     * Called when all tests have finished.
+     *
+     * @param result the summary of the test run
+     */
+    public void runFinished(Result result) {}
+
+    /**
+     * Called when test suite starts.
+     *
+     * @param suite name of test suite
+     */
+    public void suiteStarted(String suite) {}
+
+    /**
+     * Called when test suite finished.
+     *
+     * @param suite name of test suite
+     */
+    public void suiteFinished(String suite) {}
+
+    /**
+     * Called when the runner of a test class is about to run, before the class level setup.
+     *
+     * @param description the description of the test class
+     */
+    public void classStarted(Description description) {}
+
+    /**
+     * Called when the runner of a test class has finished.
+     *
+     * @param description the description of the test class
+     */
+    public void classFinished(Description description) {}
+
+    /**
+     * Called when an atomic test is about to be started.
+     *
+     * @param description the description of the test
+     */
+    public void testStarted(Description description) {}
+
+    /**
+     * Called when an atomic test fails.
+     *
+     * @param failure describes the test that failed
+     */
+    public void testFailure(Failure failure) {}
+
+    /**
+     * Called when an atomic test has finished, whether the test succeeds or fails.
+     *
+     * @param description the description of the test
+     */
+    public void testFinished(Description description) {}
+}
@@ -11,6 +11,15 @@
 package com.microsoft.java.test.runner.listeners;
 
 import java.io.PrintStream;
+import java.util.List;
+import com.microsoft.java.test.runner.BenchmarkRunner;
+import com.microsoft.java.test.runner.HeapGrowthTracker;
+import com.microsoft.java.test.runner.ReportChannel;
+import com.microsoft.java.test.runner.StartupProfiler;
+import com.microsoft.java.test.runner.TestRunStatistics;
+import com.microsoft.java.test.runner.TestRunnerOptions;
+import com.microsoft.java.test.runner.TestSampler;
+import com.microsoft.java.test.runner.TestWatchdog;
 import com.microsoft.java.test.runner.TestingMessageHelper;
 
 import org.junit.runner.Description;
@@ -23,13 +32,31 @@ public class CustomizedJUnitTestListener {
 
     private long myCurrentTestStart;
 
+    private long myCurrentSuiteStart;
+
+    private TestRunStatistics statistics;
+
+    private final PassedTestBatch passedTests;
+
+    private Description myCurrentTest;
+
+    private boolean myCurrentTestReported;
+
+    private final TestSampler sampler;
+
     public CustomizedJUnitTestListener() {
-        this.out = System.out;
+        this.out = ReportChannel.getStream();
+        int batchSize = TestRunnerOptions.getReportBatch();
+        this.passedTests = batchSize > 0
+                ? new PassedTestBatch(out, batchSize, TestRunnerOptions.getReportBatchInterval())
+                : null;
+        this.sampler = TestSampler.create();
         TestingMessageHelper.reporterAttached(out);
     }
 
     /** Called before any tests have been run. */
     public void testRunStarted() {
+        statistics = new TestRunStatistics(TestRunnerOptions.getSummaryTop());
         TestingMessageHelper.rootPresentation(out);
     }
 
@@ -40,8 +67,18 @@ public class CustomizedJUnitTestListener {
      *     method name)
      */
     public void testStarted(Description description) {
+        StartupProfiler.firstTestStarted(out);
+        if (sampler != null) {
+            sampler.testStarted();
+        }
         myCurrentTestStart = System.currentTimeMillis();
 
+        if (passedTests != null) {
+            // only reported when the test fails, passed tests go to the batch
+            myCurrentTest = description;
+            myCurrentTestReported = false;
+            return;
+        }
         TestingMessageHelper.testStarted(out, description);
     }
 
@@ -53,25 +90,53 @@ public class CustomizedJUnitTestListener {
     public void testFinished(Description description) {
         long duration = System.currentTimeMillis() - myCurrentTestStart;
 
-        TestingMessageHelper.testFinished(out, description, duration);
+        TestSampler.Profile profile = sampler != null ? sampler.testFinished(duration) : null;
+        BenchmarkRunner.Statistics benchmark = BenchmarkRunner.takeStatistics(description);
+        if (passedTests != null && !myCurrentTestReported) {
+            if (profile == null && benchmark == null) {
+                passedTests.add(description.getMethodName(), duration);
+            } else {
+                // a profiled or benchmarked test is reported on its own, the batches only carry names and durations
+                passedTests.flush();
+                TestingMessageHelper.testStarted(out, description);
+                TestingMessageHelper.testFinished(out, description, duration, profile, benchmark);
+            }
+        } else {
+            TestingMessageHelper.testFinished(out, description, duration, profile, benchmark);
+        }
+        myCurrentTest = null;
+        if (statistics != null) {
+            statistics.testFinished(description.getClassName() + "#" + description.getMethodName(), duration);
+        }
     }
 
     /**
      * Called when test suite starts.
      *
      * @param description the description of the test suite
+     * @param setup time of the class level setup before the first test, negative when unknown
+     * @param staticInit part of the setup spent in the static initializers, negative when unknown
      */
-    public void testSuiteStarted(Description description) {
-        TestingMessageHelper.testSuiteStarted(out, description);
+    public void testSuiteStarted(Description description, long setup, long staticInit) {
+        myCurrentSuiteStart = System.currentTimeMillis();
+        flushPassedTests();
+        TestingMessageHelper.testSuiteStarted(out, description, setup, staticInit);
     }
 
     /**
      * Called when test suite finished.
      *
      * @param currentSuite name of test suite
+     * @param teardown time of the class level teardown after the last test, negative when unknown
      */
-    public void testSuiteFinished(String currentSuite) {
-        TestingMessageHelper.testSuiteFinished(out, currentSuite);
+    public void testSuiteFinished(String currentSuite, long teardown) {
+        long duration = System.currentTimeMillis() - myCurrentSuiteStart;
+
+        flushPassedTests();
+        TestingMessageHelper.testSuiteFinished(out, currentSuite, duration, teardown);
+        if (statistics != null) {
+            statistics.suiteFinished(currentSuite, duration);
+        }
     }
 
     /**
@@ -82,15 +147,72 @@ public class CustomizedJUnitTestListener {
     public void testFailure(Failure failure) {
         long duration = System.currentTimeMillis() - myCurrentTestStart;
 
+        flushPassedTests();
+        if (myCurrentTest != null && !myCurrentTestReported && myCurrentTest.equals(failure.getDescription())) {
+            TestingMessageHelper.testStarted(out, myCurrentTest);
+            myCurrentTestReported = true;
+        }
         TestingMessageHelper.testFailed(out, failure, duration);
     }
 
+    /**
+     * Called at the end of the run when the heap growth of the suites is tracked.
+     *
+     * @param worstOffenders the suites with the largest heap growth, largest first
+     */
+    public void heapGrowth(List<HeapGrowthTracker.HeapGrowth> worstOffenders) {
+        TestingMessageHelper.heapGrowth(out, worstOffenders);
+    }
+
+    /**
+     * Called from the watchdog thread when a test or a test class runs past its deadline.
+     *
+     * @param description describes the test, or the test class for a class deadline
+     * @param duration time the test has been running
+     * @param timeout the deadline that passed
+     * @param action what is done with the test
+     * @param threadDump dump of all threads when the deadline passed
+     */
+    public void testTimedOut(
+            Description description, long duration, long timeout, TestWatchdog.Action action, String threadDump) {
+        flushPassedTests();
+        TestingMessageHelper.testTimedOut(out, description, duration, timeout, action, threadDump);
+    }
+
+    /**
+     * Called for a test which is not run, as it passed in an earlier run with the same bytecode.
+     *
+     * @param description describes the test
+     * @param duration time of the test in the run which passed
+     */
+    public void testCached(Description description, long duration) {
+        flushPassedTests();
+        TestingMessageHelper.testCached(out, description, duration);
+    }
+
+    /**
+     * Called when a test class has run and left threads running.
+     *
+     * @param description describes the test class
+     * @param threads the threads started by the class and still alive
+     */
+    public void threadLeak(Description description, List<Thread> threads) {
+        flushPassedTests();
+        TestingMessageHelper.threadLeak(out, description, threads);
+    }
+
     /**
      * Called when all tests have finished
      *
      * @param result the summary of the test run, including all the tests that failed
      */
     public void testRunFinished(Result result) {
+        flushPassedTests();
+        StartupProfiler.runFinished(out);
+        if (statistics != null) {
+            statistics.runFinished();
+            TestingMessageHelper.testRunSummary(out, statistics);
+        }
         TestingMessageHelper.testRunFinished(out, result);
     }
 
@@ -101,9 +223,16 @@ public class CustomizedJUnitTestListener {
      * @param description describes the test that will not be run
      */
     public void testIgnored(Description description) {
+        flushPassedTests();
         TestingMessageHelper.testIgnored(out, description.getMethodName());
     }
 
+    private void flushPassedTests() {
+        if (passedTests != null) {
+            passedTests.flush();
+        }
+    }
+
     /**
      * Parse test tree and send atomic test nodes.
      *
@@ -10,10 +10,24 @@
  */
 package com.microsoft.java.test.runner.listeners;
 
+import java.util.Collections;
+import java.util.List;
+
+import com.microsoft.java.test.runner.HeapGrowthTracker;
+import com.microsoft.java.test.runner.JUnitXmlReport;
+import com.microsoft.java.test.runner.TestRunnerOptions;
+import com.microsoft.java.test.runner.TestRunnerUtil;
+import com.microsoft.java.test.runner.TestingMessageHelper;
+import com.microsoft.java.test.runner.ThreadLeakDetector;
+import com.microsoft.java.test.runner.coverage.TestCoverageRecorder;
+import com.microsoft.java.test.runner.jfr.TestEventRecorder;
+
 import org.junit.runner.Description;
 import org.junit.runner.Result;
+import org.junit.runner.RunWith;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
 
 /**
  * Overridden JUnit run listener {@link RunListener}. The listener responds to the events during a
@@ -22,10 +36,37 @@ import org.junit.runner.notification.RunListener;
 public class JUnitExecutionListener extends RunListener {
     private CustomizedJUnitTestListener delegate;
 
+    private TestEventRecorder recorder;
+
+    private HeapGrowthTracker heapGrowthTracker;
+
+    private TestCoverageRecorder coverageRecorder;
+
+    private ThreadLeakDetector leakDetector;
+
+    private JUnitXmlReport xmlReport;
+
     private String currentSuite;
 
+    /** Time the running test class started or its last test finished, negative outside of a class. */
+    private long lastBoundary = -1;
+
+    private long staticInit = -1;
+
     public JUnitExecutionListener(CustomizedJUnitTestListener delegate) {
+        this(delegate, TestEventRecorder.NO_OP);
+    }
+
+    public JUnitExecutionListener(CustomizedJUnitTestListener delegate, TestEventRecorder recorder) {
         this.delegate = delegate;
+        this.recorder = recorder;
+        if (TestRunnerOptions.isHeapTracking()) {
+            heapGrowthTracker =
+                    new HeapGrowthTracker(TestRunnerOptions.isHeapGc(), TestRunnerOptions.getSummaryTop());
+        }
+        coverageRecorder = TestCoverageRecorder.create(TestRunnerOptions.getCoverage());
+        leakDetector = ThreadLeakDetector.create();
+        xmlReport = JUnitXmlReport.create();
         currentSuite = "";
     }
 
@@ -37,47 +78,222 @@ public class JUnitExecutionListener extends RunListener {
     @Override
     public void testRunFinished(Result result) throws Exception {
         if (!currentSuite.isEmpty()) {
-            delegate.testSuiteFinished(currentSuite);
+            suiteFinished(currentSuite, -1);
+        }
+        if (heapGrowthTracker != null) {
+            delegate.heapGrowth(heapGrowthTracker.getWorstOffenders());
         }
 
+        if (coverageRecorder != null) {
+            coverageRecorder.runFinished();
+        }
         delegate.testRunFinished(result);
+        recorder.runFinished(result);
     }
 
     @Override
     public void testStarted(Description description) throws Exception {
         updateCurrentSuite(description);
+        recorder.testStarted(description);
+        if (coverageRecorder != null) {
+            coverageRecorder.testStarted(description);
+        }
+        if (xmlReport != null) {
+            xmlReport.testStarted(description);
+        }
         delegate.testStarted(description);
     }
 
     @Override
     public void testFinished(Description description) throws Exception {
+        if (coverageRecorder != null) {
+            coverageRecorder.testFinished(description);
+        }
         delegate.testFinished(description);
+        recorder.testFinished(description);
+        if (xmlReport != null) {
+            xmlReport.testFinished(description);
+        }
+        if (lastBoundary >= 0) {
+            lastBoundary = System.currentTimeMillis();
+        }
     }
 
     @Override
     public void testFailure(Failure failure) throws Exception {
         delegate.testFailure(failure);
+        recorder.testFailure(failure);
+        if (xmlReport != null) {
+            xmlReport.testFailure(failure);
+        }
     }
 
     @Override
     public void testAssumptionFailure(Failure failure) {
         delegate.testFailure(failure);
+        recorder.testFailure(failure);
+        if (xmlReport != null) {
+            xmlReport.testAssumptionFailure(failure);
+        }
     }
 
     @Override
     public void testIgnored(Description description) throws Exception {
         updateCurrentSuite(description);
         delegate.testIgnored(description);
+        if (xmlReport != null) {
+            xmlReport.testIgnored(description);
+        }
+        if (lastBoundary >= 0) {
+            lastBoundary = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Called for a test which is not run, as it passed in an earlier run with the same bytecode.
+     *
+     * @param description the description of the test
+     * @param duration time of the test in the run which passed
+     */
+    public void testCached(Description description, long duration) {
+        updateCurrentSuite(description);
+        delegate.testCached(description, duration);
+    }
+
+    /**
+     * Called when the runner of a test class is about to run, before the class level setup.
+     *
+     * @param description the description of the test class
+     * @param notifier notifier of the run, the tests of the class fail on it when it can't be
+     *     initialized
+     * @return <code>false</code> when the class failed to initialize and must not run
+     */
+    public boolean classStarted(Description description, RunNotifier notifier) {
+        if (!currentSuite.isEmpty()) {
+            // left open by the cached tests of a class which didn't run
+            suiteFinished(currentSuite, -1);
+            currentSuite = "";
+        }
+        recorder.classStarted(description);
+        if (leakDetector != null) {
+            leakDetector.classStarted();
+        }
+        if (xmlReport != null) {
+            xmlReport.classStarted(description);
+        }
+        lastBoundary = System.currentTimeMillis();
+        Class<?> testClass = loadClass(description);
+        if (testClass == null || testClass.isAnnotationPresent(RunWith.class)) {
+            // a custom runner may initialize the class in a class loader of its own
+            return true;
+        }
+        long start = System.currentTimeMillis();
+        Throwable error = initialize(testClass);
+        staticInit = System.currentTimeMillis() - start;
+        if (error != null) {
+            // reported on every test, the suite starts with the first of them
+            TestRunnerUtil.failTests(notifier, description, error, Collections.<Description>emptySet());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called when the runner of a test class has finished, after the class level teardown.
+     *
+     * @param description the description of the test class
+     * @param notifier notifier of the run, the class fails on it when it leaks threads in strict mode
+     */
+    public void classFinished(Description description, RunNotifier notifier) {
+        long teardown = lastBoundary >= 0 ? System.currentTimeMillis() - lastBoundary : -1;
+        if (leakDetector != null) {
+            List<Thread> leaked = leakDetector.classFinished();
+            if (!leaked.isEmpty()) {
+                delegate.threadLeak(description, leaked);
+                if (leakDetector.isStrict()) {
+                    AssertionError error = new AssertionError(TestingMessageHelper.getLeakMessage(leaked.size()));
+                    error.setStackTrace(new StackTraceElement[0]);
+                    notifier.fireTestFailure(new Failure(description, error));
+                }
+            }
+        }
+        if (!currentSuite.isEmpty()) {
+            suiteFinished(currentSuite, teardown);
+            currentSuite = "";
+        }
+        lastBoundary = -1;
+        staticInit = -1;
+        if (xmlReport != null) {
+            xmlReport.classFinished();
+        }
+        recorder.classFinished(description);
+    }
+
+    /**
+     * Loads a test class without initializing it.
+     *
+     * @param description the description of the test class
+     * @return the class, or <code>null</code> when it is no class, e.g. a suite of a custom runner, or
+     *     can't be loaded, which its runner reports
+     */
+    private static Class<?> loadClass(Description description) {
+        try {
+            return Class.forName(description.getClassName(), false, JUnitExecutionListener.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the static initializers of a test class before its runner does, so they are not charged
+     * to its first test.
+     *
+     * @param testClass the test class
+     * @return the error thrown by the static initializers or while linking the class, or
+     *     <code>null</code> when the class is initialized
+     */
+    private static Throwable initialize(Class<?> testClass) {
+        try {
+            Class.forName(testClass.getName(), true, testClass.getClassLoader());
+            return null;
+        } catch (ClassNotFoundException ignored) {
+            return null;
+        } catch (ExceptionInInitializerError e) {
+            // a later attempt only throws a NoClassDefFoundError without the cause
+            return e.getCause() != null ? e.getCause() : e;
+        } catch (LinkageError e) {
+            return e;
+        }
     }
 
     private void updateCurrentSuite(Description description) {
         if (currentSuite.isEmpty()) {
             currentSuite = description.getClassName();
-            delegate.testSuiteStarted(description);
+            suiteStarted(description);
         } else if (!currentSuite.equals(description.getClassName())) {
-            delegate.testSuiteFinished(currentSuite);
+            suiteFinished(currentSuite, -1);
             currentSuite = description.getClassName();
-            delegate.testSuiteStarted(description);
+            suiteStarted(description);
+        }
+    }
+
+    private void suiteStarted(Description description) {
+        if (heapGrowthTracker != null) {
+            heapGrowthTracker.suiteStarted();
+        }
+        // the classes of a suite class have no boundaries, the time between two of them is counted
+        // as setup of the second one
+        long setup = lastBoundary >= 0 ? System.currentTimeMillis() - lastBoundary : -1;
+        delegate.testSuiteStarted(description, setup, staticInit);
+        staticInit = -1;
+        recorder.suiteStarted(currentSuite);
+    }
+
+    private void suiteFinished(String suite, long teardown) {
+        delegate.testSuiteFinished(suite, teardown);
+        recorder.suiteFinished(suite);
+        if (heapGrowthTracker != null) {
+            heapGrowthTracker.suiteFinished(suite);
         }
     }
 }
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Microsoft Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Microsoft Corporation - initial API and implementation
+ *******************************************************************************/
+package com.microsoft.java.test.runner.listeners;
+
+import com.microsoft.java.test.runner.TestRunStatistics;
+import com.microsoft.java.test.runner.TestingMessageHelper;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the tests which passed and reports them in one record once the batch is full or old enough,
+ * instead of a start and a finish event per test.
+ */
+class PassedTestBatch {
+    private final PrintStream out;
+    private final int maxSize;
+    private final long maxAge;
+
+    private List<TestRunStatistics.Timing> tests = new ArrayList<>();
+    private long batchStart;
+
+    PassedTestBatch(PrintStream out, int maxSize, long maxAge) {
+        this.out = out;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Adds a passed test to the batch, and reports the batch when it is full or older than the
+     * interval.
+     *
+     * @param name method name of the test
+     * @param duration time of test running
+     */
+    synchronized void add(String name, long duration) {
+        long now = System.currentTimeMillis();
+        if (tests.isEmpty()) {
+            batchStart = now;
+        }
+        tests.add(new TestRunStatistics.Timing(name, duration));
+        if (tests.size() >= maxSize || now - batchStart >= maxAge) {
+            flush();
+        }
+    }
+
+    /** Reports the tests of the batch, if any. */
+    synchronized void flush() {
+        if (!tests.isEmpty()) {
+            TestingMessageHelper.testsPassed(out, tests);
+            tests = new ArrayList<>();
+        }
+    }
+}
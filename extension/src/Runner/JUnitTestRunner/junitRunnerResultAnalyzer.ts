@@ -10,9 +10,16 @@ const SUITE_FINISH: string = 'testSuiteFinished';
 const TEST_START: string = 'testStarted';
 const TEST_FAIL: string = 'testFailed';
 const TEST_FINISH: string = 'testFinished';
+const TESTS_PASSED: string = 'testsPassed';
+const TEST_CACHED: string = 'testCached';
+const TEST_TIMED_OUT: string = 'testTimedOut';
+const THREAD_LEAK: string = 'threadLeak';
 
 export class JUnitRunnerResultAnalyzer extends JarFileRunnerResultAnalyzer {
     private _suiteName: string;
+    private _timeouts: Map<string, JUnitTestAttributes> = new Map<string, JUnitTestAttributes>();
+    private _classFailures: Map<string, JUnitTestAttributes> = new Map<string, JUnitTestAttributes>();
+    private _leaks: Map<string, JUnitTestAttributes> = new Map<string, JUnitTestAttributes>();
 
     public analyzeData(data: string): void {
         const regex = /@@<([^@]*)>/gm;
@@ -59,6 +66,10 @@ export class JUnitRunnerResultAnalyzer extends JarFileRunnerResultAnalyzer {
             case TEST_FAIL:
                 res = this._testResults.get(this._suiteName + "#" + info.attributes.name);
                 if (!res) {
+                    // the failures of a class itself have no method name
+                    if (this._suiteName && info.attributes.name === 'null') {
+                        this.classFailed(info.attributes);
+                    }
                     return;
                 }
                 res.status = TestStatus.Fail;
@@ -74,10 +85,56 @@ export class JUnitRunnerResultAnalyzer extends JarFileRunnerResultAnalyzer {
                     res.status = TestStatus.Pass;
                 }
                 res.duration = info.attributes.duration;
+                if (info.attributes.benchmark) {
+                    const b: JUnitBenchmark = info.attributes.benchmark;
+                    res.message = `${b.iterations} iterations after ${b.warmup} warmup iterations (ns): `
+                        + `min ${b.min}, mean ${b.mean}, p50 ${b.p50}, p99 ${b.p99}, max ${b.max}`;
+                }
+                break;
+            case TESTS_PASSED:
+                for (const test of info.attributes.tests) {
+                    this._testResults.set(this._suiteName + "#" + test.name, {
+                        status: TestStatus.Pass,
+                        duration: test.duration,
+                    });
+                }
+                break;
+            case TEST_CACHED:
+                this._testResults.set(this._suiteName + "#" + info.attributes.name, {
+                    status: TestStatus.Pass,
+                    duration: info.attributes.duration,
+                    cached: true,
+                });
+                break;
+            case TEST_TIMED_OUT:
+                // a class timeout is named after the class, and may come before its suite started
+                this._timeouts.set(!this._suiteName || info.attributes.name === this._suiteName ?
+                    info.attributes.name : this._suiteName + "#" + info.attributes.name, info.attributes);
+                break;
+            case THREAD_LEAK:
+                this._leaks.set(info.attributes.name, info.attributes);
                 break;
         }
     }
 
+    // a failure of the class itself, e.g. in @AfterClass or from a thread leak, fails the tests of the class which ran
+    private classFailed(attributes: JUnitTestAttributes): void {
+        this._classFailures.set(this._suiteName, attributes);
+        const leak: JUnitTestAttributes = this._leaks.get(this._suiteName);
+        this._testResults.forEach((res, test) => {
+            if (test.startsWith(this._suiteName + "#")) {
+                res.status = TestStatus.Fail;
+                res.message = attributes.message;
+                res.details = leak ? `${attributes.details}\n${this.getLeakDetails(leak)}` : attributes.details;
+            }
+        });
+    }
+
+    private getLeakDetails(leak: JUnitTestAttributes): string {
+        return leak.threads.map((thread: JUnitLeakedThread) =>
+            `"${thread.name}"${thread.daemon === 'true' ? ' daemon' : ''} ${thread.state}\n${thread.stack}`).join('\n');
+    }
+
     private processClass(t: ITestInfo, result: ITestResult[]): void {
         let passNum: number = 0;
         let failNum: number = 0;
@@ -104,10 +161,14 @@ export class JUnitRunnerResultAnalyzer extends JarFileRunnerResultAnalyzer {
             }
         }
 
+        const failure: JUnitTestAttributes = this._classFailures.get(t.test);
+        const leak: JUnitTestAttributes = this._leaks.get(t.test);
         const classResult: TestResult = {
             status: notRun ? undefined : (skipNum === t.children.length ? TestStatus.Skipped : (failNum > 0 ? TestStatus.Fail : TestStatus.Pass)),
             summary: `Tests run: ${passNum + failNum}, Failures: ${failNum}, Skipped: ${skipNum}.`,
             duration: notRun ? undefined : duration.toString(),
+            message: failure ? failure.message : (leak ? leak.message : undefined),
+            details: leak ? this.getLeakDetails(leak) : undefined,
         };
         result.push({
             test: t.test,
@@ -125,7 +186,18 @@ export class JUnitRunnerResultAnalyzer extends JarFileRunnerResultAnalyzer {
         result.push({
             test: t.test,
             uri: t.uri,
-            result: this._testResults.get(t.test),
+            result: this.withTimeout(t, this._testResults.get(t.test)),
+        });
+    }
+
+    private withTimeout(t: ITestInfo, res: TestResult): TestResult {
+        const timeout: JUnitTestAttributes = this._timeouts.get(t.test) || (t.parent && this._timeouts.get(t.parent.test));
+        if (!timeout || res.status === TestStatus.Skipped) {
+            return res;
+        }
+        return Object.assign({}, res, {
+            message: res.message || timeout.message,
+            details: res.details ? `${res.details}\n${timeout.details}` : timeout.details,
         });
     }
 }
@@ -141,4 +213,29 @@ export type JUnitTestAttributes = {
     location: string;
     message: string;
     details: string;
+    tests: JUnitPassedTest[];
+    benchmark?: JUnitBenchmark;
+    threads?: JUnitLeakedThread[];
+};
+
+export type JUnitLeakedThread = {
+    name: string;
+    state: string;
+    daemon: string;
+    stack: string;
+};
+
+export type JUnitPassedTest = {
+    name: string;
+    duration: string;
+};
+
+export type JUnitBenchmark = {
+    warmup: string;
+    iterations: string;
+    min: string;
+    mean: string;
+    p50: string;
+    p99: string;
+    max: string;
 };
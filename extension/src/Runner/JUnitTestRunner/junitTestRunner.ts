@@ -1,14 +1,19 @@
 // Copyright (c) Microsoft Corporation. All rights reserved.
 // Licensed under the MIT license.
 
+import * as cp from 'child_process';
+import * as fs from 'fs';
 import * as glob from 'glob';
 import * as path from 'path';
+import * as Commands from '../../commands';
 import { IJarFileTestRunnerParameters } from "../JarFileRunner/jarFileRunnerParameters";
 import { JarFileRunnerResultAnalyzer } from '../JarFileRunner/jarFileRunnerResultAnalyzer';
 import { JarFileTestRunner } from "../JarFileRunner/jarFileTestRunner";
 import { JUnitRunnerResultAnalyzer } from "./junitRunnerResultAnalyzer";
 
 export class JUnitTestRunner extends JarFileTestRunner {
+    private static dumpingArchives: Set<string> = new Set<string>();
+
     public get debugConfigName(): string {
         return 'Debug Junit Test';
     }
@@ -42,6 +47,13 @@ export class JUnitTestRunner extends JarFileTestRunner {
             commandParams = [...commandParams, ...debugParams];
         }
 
+        const sharedArchiveParams: string[] = await this.resolveSharedArchiveParams(params);
+        commandParams = [...commandParams, ...sharedArchiveParams];
+
+        if (params.reportPort) {
+            commandParams.push('-Djava.test.runner.report=tcp:' + params.reportPort);
+        }
+
         commandParams.push(this.runnerClassName);
         const suites: string[] = params.tests.map((t) => t.test);
         commandParams = [...commandParams, ...suites];
@@ -51,4 +63,81 @@ export class JUnitTestRunner extends JarFileTestRunner {
     public getTestResultAnalyzer(params: IJarFileTestRunnerParameters): JarFileRunnerResultAnalyzer {
         return new JUnitRunnerResultAnalyzer(params.tests);
     }
+
+    /*
+     * Map a CDS archive of the runner jar and the library jars to cut the JVM startup and class loading time.
+     * The JVM can't dump an archive while a folder is on the class path, so the first test run only records
+     * the classes it loads, and a separate JVM dumps them from the jars leading the class path. The later
+     * runs append the output folders to the archived class path.
+     * Archiving the application classes needs JDK 11 or later, older runtimes start without it.
+     */
+    private async resolveSharedArchiveParams(params: IJarFileTestRunnerParameters): Promise<string[]> {
+        if (this.getJavaMajorVersion() < 11 || params.classpathStr !== params.classpaths.join(path.delimiter)) {
+            // the manifest jar of a long class path is a new file on every run, it never matches an archive
+            return [];
+        }
+        const archivedJars: string[] = [];
+        for (const entry of params.classpaths) {
+            if (!entry.endsWith('.jar')) {
+                break;
+            }
+            archivedJars.push(entry);
+        }
+        try {
+            const archive = await Commands.executeJavaLanguageServerCommand(
+                Commands.JAVA_RESOLVE_SHARED_ARCHIVE, ...archivedJars) as SharedArchive;
+            if (!archive) {
+                return [];
+            }
+            if (!archive.exists) {
+                if (!fs.existsSync(archive.classList)) {
+                    return ['"-XX:DumpLoadedClassList=' + archive.classList + '"'];
+                }
+                this.dumpSharedArchive(archive, archivedJars);
+                return [];
+            }
+            return ['-Xshare:auto', '"-XX:SharedArchiveFile=' + archive.archive + '"'];
+        } catch (ex) {
+            return [];
+        }
+    }
+
+    /*
+     * The classes of the list which aren't in the archived jars, e.g. the tests themselves, are left out.
+     * A list which can't be dumped is dropped, so the next run records it again.
+     */
+    private dumpSharedArchive(archive: SharedArchive, archivedJars: string[]): void {
+        if (JUnitTestRunner.dumpingArchives.has(archive.archive)) {
+            return;
+        }
+        JUnitTestRunner.dumpingArchives.add(archive.archive);
+        const java: string = path.resolve(this._javaHome + '/bin/java');
+        cp.execFile(java, ['-Xshare:dump', '-XX:SharedClassListFile=' + archive.classList, '-XX:SharedArchiveFile=' + archive.archive,
+            '-cp', archivedJars.join(path.delimiter)], (error: Error) => {
+            if (error) {
+                fs.unlink(archive.classList, () => undefined);
+            }
+            JUnitTestRunner.dumpingArchives.delete(archive.archive);
+        });
+    }
+
+    private getJavaMajorVersion(): number {
+        try {
+            const release: string = fs.readFileSync(path.join(this._javaHome, 'release'), 'utf8');
+            const match = /JAVA_VERSION="(\d+)(?:\.(\d+))?/.exec(release);
+            if (!match) {
+                return 0;
+            }
+            const major: number = Number(match[1]);
+            return major === 1 && match[2] ? Number(match[2]) : major;
+        } catch (ex) {
+            return 0;
+        }
+    }
 }
+
+type SharedArchive = {
+    archive: string;
+    classList: string;
+    exists: boolean;
+};
@@ -5,6 +5,8 @@ import { ITestRunnerParameters } from "../testRunnerParameters";
 
 export interface IJarFileTestRunnerParameters extends ITestRunnerParameters {
     classpathStr: string;
+    classpaths: string[];
     runnerJarFilePath: string;
     runnerClassName: string;
+    reportPort?: number;
 }
@@ -15,6 +15,7 @@ import { JarFileRunnerResultAnalyzer } from "./jarFileRunnerResultAnalyzer";
 
 import * as cp from 'child_process';
 import * as getPort from "get-port";
+import * as net from 'net';
 import * as path from 'path';
 import * as rimraf from 'rimraf';
 import { debug, window, workspace, EventEmitter, Uri } from "vscode";
@@ -55,6 +56,7 @@ export abstract class JarFileTestRunner implements ITestRunner {
             isDebugMode,
             port,
             classpathStr,
+            classpaths: extendedClasspaths,
             runnerJarFilePath,
             runnerClassName,
             storagePath: storageForThisRun,
@@ -71,11 +73,23 @@ export abstract class JarFileTestRunner implements ITestRunner {
         }
         // TODO: refactor logger, no need to pass transactionId around.
         const transactionId = jarParams.transactionId;
+        const reportServer: net.Server = await this.listenForReport(transactionId);
+        jarParams.reportPort = reportServer ? reportServer.address().port : undefined;
         const command: string = await this.constructCommandWithWrapper(jarParams);
         const process = cp.exec(command);
         return new Promise<ITestResult[]>((resolve, reject) => {
             const testResultAnalyzer: JarFileRunnerResultAnalyzer = this.getTestResultAnalyzer(jarParams);
             let error: string = '';
+            let reportClosed: Promise<void> = Promise.resolve();
+            // the runner writes its events to the standard output when it can't connect to the report channel
+            let reportConnected: boolean = false;
+            if (reportServer) {
+                reportServer.on('connection', (socket: net.Socket) => {
+                    reportServer.close();
+                    reportConnected = true;
+                    reportClosed = this.readReport(socket, testResultAnalyzer, transactionId);
+                });
+            }
             process.on('error', (err) => {
                 this._logger.logError(`Error occured while running/debugging tests. Name: ${err.name}. Message: ${err.message}. Stack: ${err.stack}.`,
                     err.stack,
@@ -89,9 +103,15 @@ export abstract class JarFileTestRunner implements ITestRunner {
             });
             process.stdout.on('data', (data) => {
                 this._logger.logInfo(data.toString(), jarParams.transactionId);
-                testResultAnalyzer.analyzeData(data.toString());
+                if (!reportConnected) {
+                    testResultAnalyzer.analyzeData(data.toString());
+                }
             });
-            process.on('close', () => {
+            process.on('close', async () => {
+                if (reportServer) {
+                    reportServer.close();
+                }
+                await reportClosed;
                 if (error !== '') {
                     reject(error);
                 } else {
@@ -119,6 +139,47 @@ export abstract class JarFileTestRunner implements ITestRunner {
         });
     }
 
+    /*
+     * The runner sends its events over a loopback connection, so what the tests print to the standard
+     * output cannot corrupt them. The events are read from the standard output when no port is free,
+     * or until the runner connects, as it falls back to the standard output when it can't.
+     */
+    private listenForReport(transactionId: string): Promise<net.Server> {
+        return new Promise<net.Server>((resolve) => {
+            const server: net.Server = net.createServer();
+            server.once('error', (err) => {
+                this._logger.logError(`Failed to open the test report channel. Details: ${err}.`, err, transactionId);
+                resolve(undefined);
+            });
+            server.listen(0, '127.0.0.1', () => resolve(server));
+        });
+    }
+
+    private readReport(socket: net.Socket, testResultAnalyzer: JarFileRunnerResultAnalyzer, transactionId: string): Promise<void> {
+        return new Promise<void>((resolve) => {
+            // only complete lines are analyzed, an event may be split across chunks
+            let pending: string = '';
+            socket.setEncoding('utf8');
+            socket.on('data', (data: string) => {
+                pending += data;
+                const end: number = pending.lastIndexOf('\n');
+                if (end >= 0) {
+                    testResultAnalyzer.analyzeData(pending.substring(0, end + 1));
+                    pending = pending.substring(end + 1);
+                }
+            });
+            socket.on('error', (err) => {
+                this._logger.logError(`Error occured while reading the test report. Details: ${err}.`, err, transactionId);
+            });
+            socket.on('close', () => {
+                if (pending) {
+                    testResultAnalyzer.analyzeData(pending);
+                }
+                resolve();
+            });
+        });
+    }
+
     private async getPortWithWrapper(transactionId: string): Promise<number> {
         try {
             return await getPort();
@@ -29,6 +29,8 @@ export const JAVA_SEARCH_ALL_TESTS = 'vscode.java.test.search.all';
 
 export const JAVA_CALCULATE_CLASS_PATH = 'vscode.java.test.runtime.classpath';
 
+export const JAVA_RESOLVE_SHARED_ARCHIVE = 'vscode.java.test.runtime.cds';
+
 export const JAVA_EXECUTE_WORKSPACE_COMMAND = "java.execute.workspaceCommand";
 
 export function executeJavaLanguageServerCommand(...rest) {
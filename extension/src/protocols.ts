@@ -27,6 +27,7 @@ export type TestResult = {
     message?: string;
     duration?: string;
     summary?: string;
+    cached?: boolean;
 };
 
 export enum TestStatus {